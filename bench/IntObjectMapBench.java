@@ -0,0 +1,74 @@
+import com.inventory.service.IntObjectMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Retained memory and random get() latency of IntObjectMap against
+// HashMap<Integer, V>, at 'entries' keys (default 10M).
+//
+// Keys are 1..entries, like the app's ids, and every entry maps to one shared
+// value so only the map itself is measured. Memory is the heap retained after
+// a full GC; latency is the best of five passes of 'entries' lookups at
+// random keys. Needs a large heap, e.g. -Xmx4g for 10M entries.
+//
+//   java -Xmx4g -cp out IntObjectMapBench [entries]
+public class IntObjectMapBench {
+
+    private static final int PASSES = 5;
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int[] lookups = new int[entries];
+        Random random = new Random(42);
+        for (int i = 0; i < entries; i++) lookups[i] = 1 + random.nextInt(entries);
+
+        benchIntObjectMap(entries, lookups);
+        benchHashMap(entries, lookups);
+    }
+
+    // Each map is built and measured in its own method, so it is garbage by
+    // the time the other one is measured.
+    private static void benchIntObjectMap(int entries, int[] lookups) {
+        long before = usedAfterGc();
+        IntObjectMap<Object> map = new IntObjectMap<>();
+        for (int key = 1; key <= entries; key++) map.put(key, VALUE);
+        long bytes = usedAfterGc() - before;
+        double nanos = bestNanosPerGet(map::get, lookups);
+        System.out.printf("IntObjectMap:  %,d MB retained, %.0f ns/get%n", bytes >> 20, nanos);
+    }
+
+    private static void benchHashMap(int entries, int[] lookups) {
+        long before = usedAfterGc();
+        Map<Integer, Object> map = new HashMap<>();
+        for (int key = 1; key <= entries; key++) map.put(key, VALUE);
+        long bytes = usedAfterGc() - before;
+        double nanos = bestNanosPerGet(map::get, lookups);
+        System.out.printf("HashMap:       %,d MB retained, %.0f ns/get%n", bytes >> 20, nanos);
+    }
+
+    private interface Lookup {
+        Object get(int key);
+    }
+
+    private static double bestNanosPerGet(Lookup map, int[] lookups) {
+        double best = Double.MAX_VALUE;
+        int found = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long t = System.nanoTime();
+            for (int key : lookups) {
+                if (map.get(key) != null) found++;
+            }
+            best = Math.min(best, (double) (System.nanoTime() - t) / lookups.length);
+        }
+        if (found != PASSES * lookups.length) throw new IllegalStateException("Missing keys");
+        return best;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,100 @@
+import com.inventory.service.SalesArchive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Size and scan speed of SalesArchive segments on synthetic sales.
+//
+// Writes 'rows' sales (default 20M) over two years, 2,000 products and 500
+// distinct prices into one segment, then reports bytes per row, rows/s when
+// summing one column and when decoding all six, and how many blocks a
+// six-week date range visits. Scan timings are the best of five passes.
+//
+//   java -cp out SalesArchiveBench [rows]
+public class SalesArchiveBench {
+
+    private static final int PRODUCTS = 2_000;
+    private static final int PRICES = 500;
+    private static final int DAYS = 730;
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        Path dir = Files.createTempDirectory("sales-archive-bench");
+        try {
+            run(dir, rows);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(Path dir, int rows) throws IOException {
+        SalesArchive archive = new SalesArchive(dir);
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        Random random = new Random(42);
+        String[] products = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) products[i] = String.format("P%05d", i);
+        double[] prices = new double[PRICES];
+        for (int i = 0; i < PRICES; i++) prices[i] = (100 + i * 37) / 100.0;
+
+        long t0 = System.nanoTime();
+        try (SalesArchive.Writer writer = archive.newWriter()) {
+            for (int i = 0; i < rows; i++) {
+                LocalDate date = start.plusDays((long) i * DAYS / rows);
+                int price = random.nextInt(PRICES);
+                writer.add(new SalesArchive.Row(i + 1, products[random.nextInt(PRODUCTS)], 1 + random.nextInt(5),
+                        prices[price], prices[price] * 0.7, date));
+            }
+            writer.commit();
+        }
+        List<Path> files = archive.files();
+        Path file = files.get(0);
+        long bytes = Files.size(file);
+        System.out.printf("wrote %,d rows in %.1f s%n", rows, (System.nanoTime() - t0) / 1e9);
+        System.out.printf("%,d bytes, %.2f bytes/row%n", bytes, (double) bytes / rows);
+
+        long[] sink = new long[1];
+        double best = Double.MAX_VALUE;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long t = System.nanoTime();
+            SalesArchive.read(file, block -> {
+                long sum = 0;
+                for (int i = 0; i < block.size(); i++) sum += block.getQuantity(i);
+                sink[0] += sum;
+            });
+            best = Math.min(best, (System.nanoTime() - t) / 1e9);
+        }
+        System.out.printf("one column:  %,.0f rows/s%n", rows / best);
+
+        best = Double.MAX_VALUE;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long t = System.nanoTime();
+            SalesArchive.read(file, block -> {
+                long sum = 0;
+                double value = 0;
+                for (int i = 0; i < block.size(); i++) {
+                    sum += block.getId(i) + block.getEpochDay(i) + block.getProductCode(i) + block.getQuantity(i);
+                    value += block.getSalePrice(i) - block.getCostPrice(i);
+                }
+                sink[0] += sum + (long) value;
+            });
+            best = Math.min(best, (System.nanoTime() - t) / 1e9);
+        }
+        System.out.printf("six columns: %,.0f rows/s%n", rows / best);
+
+        int[] visited = new int[1];
+        LocalDate from = start.plusDays(300);
+        archive.scanBlocks(from, from.plusWeeks(6).minusDays(1), block -> visited[0]++);
+        int blocks = (rows + SalesArchive.BLOCK_ROWS - 1) / SalesArchive.BLOCK_ROWS;
+        System.out.printf("six-week range: %,d of %,d blocks%n", visited[0], blocks);
+        System.out.println("(checksum " + sink[0] + ")");
+    }
+}
@@ -2,10 +2,18 @@ package com.inventory;
 
 import com.inventory.db.DatabaseHelper;
 import com.inventory.service.AuthService;
+import com.inventory.service.ExpirySweeper;
+import com.inventory.service.InventoryLedger;
 import com.inventory.service.InventoryService;
+import com.inventory.service.ReorderPlanner;
+import com.inventory.service.SalesArchive;
+import com.inventory.service.SalesCompactor;
 import com.inventory.ui.LoginFrame;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     public static void main(String[] args) {
@@ -15,7 +23,34 @@ public class Main {
             } catch (Exception ignored) {}
 
             InventoryService inventoryService = new InventoryService();
+            try {
+                inventoryService.attachSalesArchive(new SalesArchive(Paths.get("SalesArchive")));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             DatabaseHelper.initializeAndLoadSampleData(inventoryService);
+            try {
+                InventoryLedger ledger = new InventoryLedger(Paths.get("InventoryLedger"));
+                inventoryService.attachLedger(ledger);
+                // The ledger writes in the background; write what is queued on exit.
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        ledger.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }, "ledger-close"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            ReorderPlanner reorderPlanner = new ReorderPlanner(inventoryService, SwingUtilities::invokeLater);
+            reorderPlanner.start(15, TimeUnit.MINUTES);
+            ExpirySweeper expirySweeper = new ExpirySweeper(inventoryService, SwingUtilities::invokeLater);
+            expirySweeper.start(1, TimeUnit.HOURS);
+            SalesCompactor salesCompactor = new SalesCompactor(inventoryService, SwingUtilities::invokeLater);
+            salesCompactor.start(1, TimeUnit.DAYS);
+            inventoryService.getReservations().start();
 
             AuthService authService = new AuthService();
 
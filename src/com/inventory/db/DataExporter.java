@@ -0,0 +1,457 @@
+package com.inventory.db;
+
+import com.inventory.model.Product;
+import com.inventory.model.StockRequest;
+import com.inventory.service.InventoryService;
+import com.inventory.service.SalesArchive;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+// Streams tables out to CSV or newline-delimited JSON.
+//
+// Rows come from forward-only, read-only cursors with a fixed fetch size and
+// are encoded straight into a 64 KB buffer that is written to a file channel
+// (through gzip when asked), so memory stays flat however large the table.
+// Sales include the archived segments as well as the Sales table. Products
+// and stock requests are streamed from the service: its products carry the
+// live stock levels, and stock requests live only in memory.
+//
+// An export can be limited to a date range, or made incremental: it then
+// writes only rows with an id above the one the last incremental export of
+// that dataset reached, and records the new high-water mark once the file is
+// complete. Only datasets whose ids keep growing across restarts can be
+// exported incrementally. Output is written under a temporary name and moved
+// into place, so a failed run leaves neither a partial file nor an advanced
+// mark.
+public class DataExporter {
+
+    public enum Dataset {
+        PRODUCTS(false), SALES(true), PURCHASE_ORDERS(true), STOCK_REQUESTS(false);
+
+        private final boolean incremental;
+
+        Dataset(boolean incremental) {
+            this.incremental = incremental;
+        }
+
+        // Products have no numeric ids, and stock request ids start again
+        // at 1 whenever the app restarts.
+        public boolean isIncremental() { return incremental; }
+    }
+
+    public enum Format { CSV, NDJSON }
+
+    public static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InventoryService service;
+    private final Path watermarkFile;
+
+    public DataExporter(InventoryService service, Path stateDirectory) throws IOException {
+        Files.createDirectories(stateDirectory);
+        this.service = service;
+        this.watermarkFile = stateDirectory.resolve("export-watermarks.properties");
+    }
+
+    // Everything, or only rows dated from..to inclusive when both are given.
+    // Products have no date and are always exported whole.
+    public long export(Dataset dataset, Format format, boolean gzip, Path target,
+                       LocalDate from, LocalDate to) throws IOException, SQLException {
+        return run(dataset, format, gzip, target, from, to, -1);
+    }
+
+    // Rows added since the last incremental export of this dataset.
+    public long exportSinceLast(Dataset dataset, Format format, boolean gzip, Path target)
+            throws IOException, SQLException {
+        if (!dataset.isIncremental()) {
+            throw new IllegalArgumentException(dataset + " can't be exported incrementally.");
+        }
+        Properties marks = loadWatermarks();
+        int since = Integer.parseInt(marks.getProperty(dataset.name(), "0"));
+        return run(dataset, format, gzip, target, null, null, since);
+    }
+
+    public int getWatermark(Dataset dataset) throws IOException {
+        return Integer.parseInt(loadWatermarks().getProperty(dataset.name(), "0"));
+    }
+
+    private long run(Dataset dataset, Format format, boolean gzip, Path target,
+                     LocalDate from, LocalDate to, int since) throws IOException, SQLException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "export", ".tmp");
+        RecordWriter out = new RecordWriter(open(tmp, gzip), format);
+        boolean completed = false;
+        try {
+            switch (dataset) {
+                case PRODUCTS:        exportProducts(out); break;
+                case SALES:           exportSales(out, from, to, since); break;
+                case PURCHASE_ORDERS: exportPurchaseOrders(out, from, to, since); break;
+                default:              exportStockRequests(out, from, to, since); break;
+            }
+            out.close();
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            completed = true;
+        } finally {
+            if (!completed) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {}
+                Files.deleteIfExists(tmp);
+            }
+        }
+        if (since >= 0 && out.maxId > since) {
+            Properties marks = loadWatermarks();
+            marks.setProperty(dataset.name(), Integer.toString(out.maxId));
+            saveWatermarks(marks);
+        }
+        return out.rows;
+    }
+
+    private static WritableByteChannel open(Path file, boolean gzip) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (!gzip) return channel;
+        return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    // ---------- Datasets ----------
+
+    private void exportProducts(RecordWriter out) throws IOException {
+        out.header("id", "name", "category", "price", "stock", "reorder_level", "expiry_date");
+        for (Product p : service.getAllProducts()) {
+            out.begin();
+            out.field(p.getId());
+            out.field(p.getName());
+            out.field(p.getCategory());
+            out.field(p.getUnitPrice());
+            out.field(p.getStockLevel());
+            out.field(p.getReorderLevel());
+            out.field(p.getExpiryDate() != null ? p.getExpiryDate().toString() : null);
+            out.end(0);
+        }
+    }
+
+    // Archived segments hold everything up to the archive's high-water id;
+    // the Sales table holds the rest, less any rows a crashed archiving run
+    // left behind.
+    private void exportSales(RecordWriter out, LocalDate from, LocalDate to, int since)
+            throws SQLException, IOException {
+        out.header("id", "product_id", "quantity", "sale_price", "cost_price", "sale_date");
+        SalesArchive archive = service.getSalesArchive();
+        int archivedThrough = archive != null ? archive.getArchivedThroughId() : 0;
+        if (since < archivedThrough) {
+            LocalDate lo = from != null ? from : LocalDate.of(1, 1, 1);
+            LocalDate hi = to != null ? to : LocalDate.of(9999, 12, 31);
+            IOException[] failure = new IOException[1];
+            archive.scanBlocks(lo, hi, block -> {
+                if (failure[0] != null) return;
+                try {
+                    for (int i = 0; i < block.size(); i++) {
+                        long day = block.getEpochDay(i);
+                        if (day < lo.toEpochDay() || day > hi.toEpochDay() || block.getId(i) <= since) continue;
+                        out.begin();
+                        out.field(block.getId(i));
+                        out.field(block.getProductId(i));
+                        out.field(block.getQuantity(i));
+                        out.field(block.getSalePrice(i));
+                        out.field(block.getCostPrice(i));
+                        out.field(LocalDate.ofEpochDay(day).toString());
+                        out.end(block.getId(i));
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+        query(out, "SELECT id, product_id, quantity, sale_price, cost_price, sale_date FROM Sales",
+                "id", "sale_date", from, to, Math.max(since, archivedThrough));
+    }
+
+    // One row per order line, with the order's header columns repeated.
+    private void exportPurchaseOrders(RecordWriter out, LocalDate from, LocalDate to, int since)
+            throws SQLException, IOException {
+        query(out, "SELECT o.id, o.supplier_id, o.created_date, o.status, " +
+                        "i.id AS item_id, i.product_id, i.quantity, i.unit_price, i.received_qty " +
+                        "FROM PurchaseOrders o LEFT JOIN OrderItems i ON i.purchase_order_id = o.id",
+                "o.id", "o.created_date", from, to, since);
+    }
+
+    private void exportStockRequests(RecordWriter out, LocalDate from, LocalDate to, int since) throws IOException {
+        out.header("id", "product_id", "quantity", "cost_price", "sale_price",
+                "requested_by", "status", "requested_at", "decided_at");
+        for (StockRequest r : service.getAllStockRequests()) {
+            if (r.getId() <= since) continue;
+            LocalDate day = r.getRequestedAt() != null ? r.getRequestedAt().toLocalDate() : null;
+            if (day != null && ((from != null && day.isBefore(from)) || (to != null && day.isAfter(to)))) continue;
+            out.begin();
+            out.field(r.getId());
+            out.field(r.getProduct().getId());
+            out.field(r.getQuantity());
+            out.field(r.getCostPrice());
+            out.field(r.getSalePrice());
+            out.field(r.getRequestedBy() != null ? r.getRequestedBy().getId() : 0);
+            out.field(r.getStatus());
+            out.field(r.getRequestedAt() != null ? r.getRequestedAt().toString() : null);
+            out.field(r.getDecidedAt() != null ? r.getDecidedAt().toString() : null);
+            out.end(r.getId());
+        }
+    }
+
+    // Streams a SELECT whose first column is the row id, adding the date range
+    // and incremental filters and ordering by id. A null date or a negative
+    // 'since' leaves that filter out.
+    private void query(RecordWriter out, String select, String idColumn, String dateColumn,
+                       LocalDate from, LocalDate to, int since) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(select);
+        String glue = " WHERE ";
+        boolean hasFrom = dateColumn != null && from != null;
+        boolean hasTo = dateColumn != null && to != null;
+        if (hasFrom) { sql.append(glue).append(dateColumn).append(" >= ?"); glue = " AND "; }
+        if (hasTo) { sql.append(glue).append(dateColumn).append(" <= ?"); glue = " AND "; }
+        if (since >= 0) { sql.append(glue).append(idColumn).append(" > ?"); }
+        sql.append(" ORDER BY ").append(idColumn);
+
+        try (Connection con = DatabaseHelper.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            int p = 1;
+            if (hasFrom) ps.setDate(p++, Date.valueOf(from));
+            if (hasTo) ps.setDate(p++, Date.valueOf(to));
+            if (since >= 0) ps.setInt(p, since);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int n = meta.getColumnCount();
+                String[] names = new String[n];
+                int[] types = new int[n];
+                for (int c = 0; c < n; c++) {
+                    names[c] = meta.getColumnLabel(c + 1).toLowerCase();
+                    types[c] = meta.getColumnType(c + 1);
+                }
+                if (!out.hasHeader()) out.header(names);
+                while (rs.next()) {
+                    out.begin();
+                    for (int c = 0; c < n; c++) {
+                        writeColumn(out, rs, c + 1, types[c]);
+                    }
+                    out.end(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    private static void writeColumn(RecordWriter out, ResultSet rs, int column, int type)
+            throws SQLException, IOException {
+        switch (type) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.BIGINT: {
+                long v = rs.getLong(column);
+                if (rs.wasNull()) out.field((String) null); else out.field(v);
+                break;
+            }
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DECIMAL: {
+                double v = rs.getDouble(column);
+                if (rs.wasNull()) out.field((String) null); else out.field(v);
+                break;
+            }
+            default: {
+                Object v = rs.getObject(column);
+                out.field(v != null ? v.toString() : null);
+                break;
+            }
+        }
+    }
+
+    // ---------- Watermarks ----------
+
+    private Properties loadWatermarks() throws IOException {
+        Properties marks = new Properties();
+        if (Files.exists(watermarkFile)) {
+            try (Reader in = Files.newBufferedReader(watermarkFile)) {
+                marks.load(in);
+            }
+        }
+        return marks;
+    }
+
+    private void saveWatermarks(Properties marks) throws IOException {
+        Path tmp = watermarkFile.resolveSibling(watermarkFile.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp)) {
+            marks.store(out, "Highest id written by the last incremental export");
+        }
+        Files.move(tmp, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---------- Encoding ----------
+
+    // Encodes records field by field into one reused byte buffer.
+    private static final class RecordWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final Format format;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder line = new StringBuilder(256);
+        private String[] names;
+        private int field;
+        private boolean closed;
+        long rows;
+        int maxId;
+
+        RecordWriter(WritableByteChannel channel, Format format) {
+            this.channel = channel;
+            this.format = format;
+        }
+
+        boolean hasHeader() {
+            return names != null;
+        }
+
+        void header(String... names) throws IOException {
+            this.names = names;
+            if (format == Format.CSV) {
+                for (int i = 0; i < names.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(names[i]);
+                }
+                line.append('\n');
+                flushLine();
+            }
+        }
+
+        void begin() {
+            field = 0;
+            if (format == Format.NDJSON) line.append('{');
+        }
+
+        void field(String value) {
+            separator();
+            if (format == Format.CSV) {
+                if (value != null) csv(value);
+            } else if (value == null) {
+                line.append("null");
+            } else {
+                json(value);
+            }
+        }
+
+        void field(long value) {
+            separator();
+            line.append(value);
+        }
+
+        void field(double value) {
+            separator();
+            line.append(value);
+        }
+
+        void end(int id) throws IOException {
+            line.append(format == Format.NDJSON ? "}\n" : "\n");
+            flushLine();
+            rows++;
+            if (id > maxId) maxId = id;
+        }
+
+        private void separator() {
+            if (format == Format.NDJSON) {
+                if (field > 0) line.append(',');
+                json(names[field]);
+                line.append(':');
+            } else if (field > 0) {
+                line.append(',');
+            }
+            field++;
+        }
+
+        private void csv(String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') line.append('"');
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void json(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':  line.append("\\\""); break;
+                    case '\\': line.append("\\\\"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    case '\t': line.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+
+        private void flushLine() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+            line.setLength(0);
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -1,9 +1,27 @@
 package com.inventory.db;
 
+import com.inventory.model.GoodsReceipt;
+import com.inventory.model.OrderItem;
+import com.inventory.model.OrderStatus;
+import com.inventory.model.Product;
+import com.inventory.model.PurchaseOrder;
+import com.inventory.model.Sale;
 import com.inventory.service.InventoryService;
+import com.inventory.service.LotQueue;
+import com.inventory.service.SalesArchive;
+import com.inventory.service.SalesRollups;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class DatabaseHelper {
 
@@ -35,9 +53,12 @@ public class DatabaseHelper {
                                 "category VARCHAR(50), " +
                                 "price DOUBLE, " +
                                 "stock INT, " +
-                                "reorder_level INT" +
+                                "reorder_level INT, " +
+                                "expiry_date DATE" +
                                 ")"
                 );
+            } else if (!columnExists(meta, "PRODUCTS", "EXPIRY_DATE")) {
+                st.executeUpdate("ALTER TABLE Products ADD COLUMN expiry_date DATE");
             }
 
             if (!tableExists(meta, "SUPPLIERS")) {
@@ -80,9 +101,18 @@ public class DatabaseHelper {
                                 "purchase_order_id INT, " +
                                 "product_id VARCHAR(20), " +
                                 "quantity INT, " +
-                                "unit_price DOUBLE" +
+                                "unit_price DOUBLE, " +
+                                "received_qty INT DEFAULT 0" +
                                 ")"
                 );
+            } else if (!columnExists(meta, "ORDERITEMS", "RECEIVED_QTY")) {
+                st.executeUpdate("ALTER TABLE OrderItems ADD COLUMN received_qty INT DEFAULT 0");
+                st.executeUpdate("UPDATE OrderItems SET received_qty = quantity WHERE purchase_order_id IN " +
+                        "(SELECT id FROM PurchaseOrders WHERE status = 'RECEIVED')");
+            }
+
+            if (!indexExists(meta, "ORDERITEMS", "IDX_ORDERITEMS_PO")) {
+                st.executeUpdate("CREATE INDEX idx_orderitems_po ON OrderItems (purchase_order_id)");
             }
 
             if (!tableExists(meta, "USERS")) {
@@ -123,6 +153,48 @@ public class DatabaseHelper {
                                 ")"
                 );
             }
+
+            // One row per FIFO cost lot still held; a NULL cost is unknown.
+            if (!tableExists(meta, "STOCKLOTS")) {
+                st.executeUpdate(
+                        "CREATE TABLE StockLots (" +
+                                "product_id VARCHAR(20), " +
+                                "seq INT, " +
+                                "quantity INT, " +
+                                "unit_cost DOUBLE, " +
+                                "expiry_date DATE, " +
+                                "PRIMARY KEY (product_id, seq)" +
+                                ")"
+                );
+            }
+
+            if (!tableExists(meta, "STOCKBYLOCATION")) {
+                st.executeUpdate(
+                        "CREATE TABLE StockByLocation (" +
+                                "product_id VARCHAR(20), " +
+                                "location_id VARCHAR(20), " +
+                                "quantity INT, " +
+                                "PRIMARY KEY (product_id, location_id)" +
+                                ")"
+                );
+            }
+
+            if (!tableExists(meta, "SALESROLLUPS")) {
+                st.executeUpdate(
+                        "CREATE TABLE SalesRollups (" +
+                                "granularity VARCHAR(5), " +
+                                "bucket BIGINT, " +
+                                "product_id VARCHAR(20), " +
+                                "seller_id INT, " +
+                                "category VARCHAR(50), " +
+                                "sale_count BIGINT, " +
+                                "units BIGINT, " +
+                                "revenue DOUBLE, " +
+                                "profit DOUBLE, " +
+                                "PRIMARY KEY (granularity, bucket, product_id, seller_id, category)" +
+                                ")"
+                );
+            }
         }
     }
 
@@ -132,6 +204,21 @@ public class DatabaseHelper {
         }
     }
 
+    private static boolean columnExists(DatabaseMetaData meta, String table, String column) throws SQLException {
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean indexExists(DatabaseMetaData meta, String table, String index) throws SQLException {
+        try (ResultSet rs = meta.getIndexInfo(null, null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+            }
+            return false;
+        }
+    }
+
     private static void insertSampleDataIfEmpty(Connection con) throws SQLException {
         if (isTableEmpty(con, "PRODUCTS")) insertSampleProducts(con);
         if (isTableEmpty(con, "SUPPLIERS")) insertSampleSuppliers(con);
@@ -150,19 +237,21 @@ public class DatabaseHelper {
     }
 
     private static void insertSampleProducts(Connection con) throws SQLException {
-        String sql = "INSERT INTO Products (id, name, category, price, stock, reorder_level) VALUES (?,?,?,?,?,?)";
+        String sql = "INSERT INTO Products (id, name, category, price, stock, reorder_level, expiry_date) " +
+                "VALUES (?,?,?,?,?,?,?)";
         try (PreparedStatement ps = con.prepareStatement(sql)) {
+            LocalDate today = LocalDate.now();
             Object[][] data = {
-                    {"P001", "Notebook", "Stationery", 2.99, 50, 10},
-                    {"P002", "Ball Pen", "Stationery", 0.99, 200, 30},
-                    {"P003", "USB Drive 32GB", "Electronics", 12.50, 20, 5},
-                    {"P004", "24\" LED Monitor", "Electronics", 129.99, 15, 3},
-                    {"P005", "Mechanical Keyboard", "Electronics", 59.99, 40, 8},
-                    {"P006", "Wireless Mouse", "Electronics", 24.99, 60, 10},
-                    {"P007", "Ground Coffee 1kg", "Grocery", 15.49, 35, 7},
-                    {"P008", "Organic Milk 1L", "Grocery", 3.49, 80, 20},
-                    {"P009", "Potato Chips Family Pack", "Grocery", 4.29, 120, 25},
-                    {"P010", "Anti-Dandruff Shampoo 500ml", "Personal Care", 8.99, 45, 10}
+                    {"P001", "Notebook", "Stationery", 2.99, 50, 10, null},
+                    {"P002", "Ball Pen", "Stationery", 0.99, 200, 30, null},
+                    {"P003", "USB Drive 32GB", "Electronics", 12.50, 20, 5, null},
+                    {"P004", "24\" LED Monitor", "Electronics", 129.99, 15, 3, null},
+                    {"P005", "Mechanical Keyboard", "Electronics", 59.99, 40, 8, null},
+                    {"P006", "Wireless Mouse", "Electronics", 24.99, 60, 10, null},
+                    {"P007", "Ground Coffee 1kg", "Grocery", 15.49, 35, 7, today.plusMonths(6)},
+                    {"P008", "Organic Milk 1L", "Grocery", 3.49, 80, 20, today.plusDays(10)},
+                    {"P009", "Potato Chips Family Pack", "Grocery", 4.29, 120, 25, today.plusMonths(3)},
+                    {"P010", "Anti-Dandruff Shampoo 500ml", "Personal Care", 8.99, 45, 10, null}
             };
             for (Object[] row : data) {
                 ps.setString(1, (String) row[0]);
@@ -171,6 +260,7 @@ public class DatabaseHelper {
                 ps.setDouble(4, (Double) row[3]);
                 ps.setInt(5, (Integer) row[4]);
                 ps.setInt(6, (Integer) row[5]);
+                ps.setDate(7, row[6] != null ? Date.valueOf((LocalDate) row[6]) : null);
                 ps.executeUpdate();
             }
         }
@@ -234,17 +324,17 @@ public class DatabaseHelper {
     }
 
     private static void insertSampleOrderItems(Connection con) throws SQLException {
-        String sql = "INSERT INTO OrderItems (id, purchase_order_id, product_id, quantity, unit_price) " +
-                "VALUES (?,?,?,?,?)";
+        String sql = "INSERT INTO OrderItems (id, purchase_order_id, product_id, quantity, unit_price, received_qty) " +
+                "VALUES (?,?,?,?,?,?)";
         try (PreparedStatement ps = con.prepareStatement(sql)) {
             int id = 1;
             Object[][] data = {
-                    {id++, 1, "P001", 100, 2.50},
-                    {id++, 1, "P002", 500, 0.80},
-                    {id++, 2, "P003", 50, 11.00},
-                    {id++, 2, "P004", 20, 120.00},
-                    {id++, 3, "P007", 60, 14.00},
-                    {id++, 3, "P008", 120, 3.00}
+                    {id++, 1, "P001", 100, 2.50, 100},
+                    {id++, 1, "P002", 500, 0.80, 500},
+                    {id++, 2, "P003", 50, 11.00, 50},
+                    {id++, 2, "P004", 20, 120.00, 20},
+                    {id++, 3, "P007", 60, 14.00, 0},
+                    {id++, 3, "P008", 120, 3.00, 0}
             };
             for (Object[] row : data) {
                 ps.setInt(1, (Integer) row[0]);
@@ -252,6 +342,7 @@ public class DatabaseHelper {
                 ps.setString(3, (String) row[2]);
                 ps.setInt(4, (Integer) row[3]);
                 ps.setDouble(5, (Double) row[4]);
+                ps.setInt(6, (Integer) row[5]);
                 ps.executeUpdate();
             }
         }
@@ -300,15 +391,18 @@ public class DatabaseHelper {
 
     private static void loadDataIntoService(Connection con, InventoryService service) throws SQLException {
         loadProducts(con, service);
+        loadLots(con, service);
+        loadStockByLocation(con, service);
         loadSuppliers(con, service);
         loadCustomers(con, service);
         loadPurchaseOrders(con, service);
-        loadOrderItems(con, service);
+        loadReorderInfo(con, service);
         loadSales(con, service);
+        loadSalesRollups(con, service);
     }
 
     private static void loadProducts(Connection con, InventoryService service) throws SQLException {
-        String sql = "SELECT id, name, category, price, stock, reorder_level FROM Products";
+        String sql = "SELECT id, name, category, price, stock, reorder_level, expiry_date FROM Products";
         try (Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
@@ -318,13 +412,77 @@ public class DatabaseHelper {
                         rs.getString("category"),
                         rs.getDouble("price"),
                         rs.getInt("stock"),
-                        null,
+                        toLocalDate(rs.getDate("expiry_date")),
                         rs.getInt("reorder_level")
                 );
             }
         }
     }
 
+    // Restores each product's saved lots. Products with none saved get them
+    // rebuilt from their order lines, newest first: the received quantities
+    // with their prices, and the latest price as the cost of anything older.
+    private static void loadLots(Connection con, InventoryService service) throws SQLException {
+        Map<String, List<LotQueue.Lot>> saved = new LinkedHashMap<>();
+        String sql = "SELECT product_id, quantity, unit_cost, expiry_date FROM StockLots ORDER BY product_id, seq";
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                double cost = rs.getDouble("unit_cost");
+                if (rs.wasNull()) cost = LotQueue.UNKNOWN_COST;
+                saved.computeIfAbsent(rs.getString("product_id"), k -> new ArrayList<>())
+                        .add(new LotQueue.Lot(rs.getInt("quantity"), cost, toLocalDate(rs.getDate("expiry_date"))));
+            }
+        }
+        for (Map.Entry<String, List<LotQueue.Lot>> e : saved.entrySet()) {
+            service.addLotsFromDatabase(e.getKey(), e.getValue());
+        }
+
+        Map<String, List<LotQueue.Lot>> received = new HashMap<>();
+        Map<String, Double> quoted = new HashMap<>();
+        sql = "SELECT oi.product_id, oi.received_qty, oi.unit_price FROM OrderItems oi " +
+                "JOIN PurchaseOrders po ON po.id = oi.purchase_order_id " +
+                "ORDER BY po.created_date DESC, po.id DESC, oi.id DESC";
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String productId = rs.getString("product_id");
+                if (saved.containsKey(productId)) continue;
+                quoted.putIfAbsent(productId, rs.getDouble("unit_price"));
+                if (rs.getInt("received_qty") > 0) {
+                    received.computeIfAbsent(productId, k -> new ArrayList<>())
+                            .add(new LotQueue.Lot(rs.getInt("received_qty"), rs.getDouble("unit_price"), null));
+                }
+            }
+        }
+        for (Product p : service.getAllProducts()) {
+            if (saved.containsKey(p.getId()) || p.getStockLevel() <= 0) continue;
+            service.rebuildLotsFromDatabase(p.getId(), received.getOrDefault(p.getId(), new ArrayList<>()),
+                    quoted.getOrDefault(p.getId(), LotQueue.UNKNOWN_COST));
+        }
+    }
+
+    // Products with no saved rows keep all their stock at the default
+    // location, where loading the product put it.
+    private static void loadStockByLocation(Connection con, InventoryService service) throws SQLException {
+        Map<String, Map<String, Integer>> saved = new LinkedHashMap<>();
+        String sql = "SELECT product_id, location_id, quantity FROM StockByLocation";
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                saved.computeIfAbsent(rs.getString("product_id"), k -> new LinkedHashMap<>())
+                        .put(rs.getString("location_id"), rs.getInt("quantity"));
+            }
+        }
+        for (Map.Entry<String, Map<String, Integer>> e : saved.entrySet()) {
+            service.addStockByLocationFromDatabase(e.getKey(), e.getValue());
+        }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+
     private static void loadSuppliers(Connection con, InventoryService service) throws SQLException {
         String sql = "SELECT id, name, email, phone FROM Suppliers";
         try (Statement st = con.createStatement();
@@ -355,8 +513,16 @@ public class DatabaseHelper {
         }
     }
 
+    // Orders are loaded as headers with their totals; lines are fetched per order
+    // by loadOrderItems when first needed. The total is summed line by line in
+    // cents exactly as OrderItem.getLineTotalCents rounds it, so the header
+    // matches the lines once they are loaded.
     private static void loadPurchaseOrders(Connection con, InventoryService service) throws SQLException {
-        String sql = "SELECT id, supplier_id, created_date, status FROM PurchaseOrders";
+        String sql = "SELECT po.id, po.supplier_id, po.created_date, po.status, " +
+                "COALESCE(SUM(CAST(FLOOR(oi.unit_price * 100 + 0.5) AS BIGINT) * oi.quantity), 0) AS total_cents, " +
+                "COALESCE(SUM(oi.quantity), 0) AS units, COUNT(oi.purchase_order_id) AS lines " +
+                "FROM PurchaseOrders po LEFT JOIN OrderItems oi ON oi.purchase_order_id = po.id " +
+                "GROUP BY po.id, po.supplier_id, po.created_date, po.status";
         try (Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
@@ -364,29 +530,76 @@ public class DatabaseHelper {
                         rs.getInt("id"),
                         rs.getInt("supplier_id"),
                         rs.getDate("created_date").toLocalDate(),
-                        rs.getString("status")
+                        rs.getString("status"),
+                        rs.getLong("total_cents"),
+                        rs.getLong("units"),
+                        rs.getInt("lines")
                 );
             }
         }
     }
 
-    private static void loadOrderItems(Connection con, InventoryService service) throws SQLException {
-        String sql = "SELECT purchase_order_id, product_id, quantity, unit_price FROM OrderItems";
+    // Latest supplier of each product and the quantity still outstanding on
+    // orders that haven't been fully received.
+    private static void loadReorderInfo(Connection con, InventoryService service) throws SQLException {
+        String sql = "SELECT oi.product_id, po.supplier_id FROM OrderItems oi " +
+                "JOIN PurchaseOrders po ON po.id = oi.purchase_order_id " +
+                "ORDER BY po.created_date, po.id";
         try (Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
-                service.addOrderItemFromDatabase(
-                        rs.getInt("purchase_order_id"),
-                        rs.getString("product_id"),
-                        rs.getInt("quantity"),
-                        rs.getDouble("unit_price")
-                );
+                service.addPreferredSupplierFromDatabase(rs.getString("product_id"), rs.getInt("supplier_id"));
+            }
+        }
+
+        sql = "SELECT oi.product_id, SUM(oi.quantity - oi.received_qty) AS outstanding FROM OrderItems oi " +
+                "JOIN PurchaseOrders po ON po.id = oi.purchase_order_id " +
+                "WHERE po.status <> 'RECEIVED' GROUP BY oi.product_id";
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                int outstanding = rs.getInt("outstanding");
+                if (outstanding > 0) {
+                    service.addQuantityOnOrderFromDatabase(rs.getString("product_id"), outstanding);
+                }
+            }
+        }
+    }
+
+    // A line whose product no longer exists keeps a placeholder product with
+    // the stored id, so the lines still add up to the order's stored total.
+    public static List<OrderItem> loadOrderItems(int purchaseOrderId,
+                                                 Function<String, Product> productLookup)
+            throws SQLException {
+        List<OrderItem> items = new ArrayList<>();
+        String sql = "SELECT id, product_id, quantity, unit_price, received_qty FROM OrderItems " +
+                "WHERE purchase_order_id = ? ORDER BY id";
+        try (Connection con = getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, purchaseOrderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String productId = rs.getString("product_id");
+                    Product product = productLookup.apply(productId);
+                    if (product == null) {
+                        product = new Product(productId, "(removed product " + productId + ")", "",
+                                0, 0, null, 0);
+                    }
+                    items.add(new OrderItem(
+                            rs.getInt("id"),
+                            product,
+                            rs.getInt("quantity"),
+                            rs.getDouble("unit_price"),
+                            rs.getInt("received_qty")
+                    ));
+                }
             }
         }
+        return items;
     }
 
     private static void loadSales(Connection con, InventoryService service) throws SQLException {
-        String sql = "SELECT id, product_id, quantity, sale_price, cost_price, sale_date FROM Sales";
+        String sql = "SELECT id, product_id, quantity, sale_price, cost_price, sale_date FROM Sales ORDER BY sale_date, id";
         try (Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
@@ -402,19 +615,460 @@ public class DatabaseHelper {
         }
     }
 
-    public static void insertSale(String productId, int qty,
-                                  double salePrice, double costPrice, LocalDate date)
-            throws SQLException {
+    // Restores the rollups, or builds them from the loaded sales the first
+    // time the table is empty.
+    private static void loadSalesRollups(Connection con, InventoryService service) throws SQLException {
+        String sql = "SELECT granularity, bucket, product_id, seller_id, category, sale_count, units, revenue, profit " +
+                "FROM SalesRollups";
+        boolean any = false;
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                any = true;
+                service.addSalesRollupFromDatabase(
+                        SalesRollups.Granularity.valueOf(rs.getString("granularity")),
+                        rs.getLong("bucket"),
+                        rs.getString("product_id"),
+                        rs.getInt("seller_id"),
+                        rs.getString("category"),
+                        rs.getLong("sale_count"),
+                        rs.getLong("units"),
+                        rs.getDouble("revenue"),
+                        rs.getDouble("profit")
+                );
+            }
+        }
+        if (!any) {
+            // Move old detail into the archive first so the rebuild can read
+            // every sale from the archive files and the retained window.
+            try {
+                archiveSalesBefore(con, service);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            service.rebuildSalesRollups();
+            if (!service.getSalesRollups().isEmpty()) {
+                saveSalesRollups(con, service);
+            }
+        }
+    }
+
+    // Moves sales older than the service's retention window from the Sales
+    // table into its archive and drops hour rollups from the same period.
+    // Returns the number of rows removed from Sales.
+    public static int archiveOldSales(InventoryService service) throws SQLException, IOException {
+        try (Connection con = getConnection()) {
+            return archiveSalesBefore(con, service);
+        }
+    }
+
+    private static int archiveSalesBefore(Connection con, InventoryService service) throws SQLException, IOException {
+        SalesArchive archive = service.getSalesArchive();
+        LocalDate cutoff = service.getSalesRetentionCutoff(LocalDate.now());
+        if (archive == null || cutoff == null) return 0;
+
+        int through = archive.getArchivedThroughId();
+        String sql = "SELECT id, product_id, quantity, sale_price, cost_price, sale_date FROM Sales " +
+                "WHERE sale_date < ? AND id > ? ORDER BY id";
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             SalesArchive.Writer writer = archive.newWriter()) {
+            ps.setFetchSize(1000);
+            ps.setDate(1, Date.valueOf(cutoff));
+            ps.setInt(2, through);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    writer.add(new SalesArchive.Row(
+                            rs.getInt("id"),
+                            rs.getString("product_id"),
+                            rs.getInt("quantity"),
+                            rs.getDouble("sale_price"),
+                            rs.getDouble("cost_price"),
+                            rs.getDate("sale_date").toLocalDate()));
+                }
+            }
+            writer.commit();
+        }
+
+        con.setAutoCommit(false);
+        try (PreparedStatement sales = con.prepareStatement(
+                     "DELETE FROM Sales WHERE sale_date < ? AND id <= ?");
+             PreparedStatement hours = con.prepareStatement(
+                     "DELETE FROM SalesRollups WHERE granularity = ? AND bucket < ?")) {
+            sales.setDate(1, Date.valueOf(cutoff));
+            sales.setInt(2, archive.getArchivedThroughId());
+            int removed = sales.executeUpdate();
+            hours.setString(1, SalesRollups.Granularity.HOUR.name());
+            hours.setLong(2, SalesRollups.bucketOf(SalesRollups.Granularity.HOUR, cutoff.atStartOfDay()));
+            hours.executeUpdate();
+            con.commit();
+            return removed;
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    // Rebuilds the rollups from sales history and replaces the stored copy.
+    // Old sales are archived first, as on startup: the rebuild reads the
+    // archive and the retained window, so a sale that had left the window
+    // but not yet reached the archive would be in neither. The detail just
+    // archived is then dropped from memory so it isn't counted twice.
+    public static void rebuildSalesRollups(InventoryService service) throws SQLException {
+        try (Connection con = getConnection()) {
+            try {
+                archiveSalesBefore(con, service);
+                service.compactSales(LocalDate.now());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            service.rebuildSalesRollups();
+            saveSalesRollups(con, service);
+        }
+    }
+
+    private static void saveSalesRollups(Connection con, InventoryService service) throws SQLException {
+        String sql = "INSERT INTO SalesRollups " +
+                "(granularity, bucket, product_id, seller_id, category, sale_count, units, revenue, profit) " +
+                "VALUES (?,?,?,?,?,?,?,?,?)";
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            st.executeUpdate("DELETE FROM SalesRollups");
+            SQLException[] failure = new SQLException[1];
+            service.getSalesRollups().forEachCell((granularity, bucket, cell) -> {
+                if (failure[0] != null) return;
+                Product p = service.getProductByOrdinal(cell.getOrdinal());
+                if (p == null) return;
+                try {
+                    ps.setString(1, granularity.name());
+                    ps.setLong(2, bucket);
+                    ps.setString(3, p.getId());
+                    ps.setInt(4, cell.getSellerId());
+                    ps.setString(5, service.getCategoryName(cell.getCategoryCode()));
+                    ps.setLong(6, cell.getTotals().getSaleCount());
+                    ps.setLong(7, cell.getTotals().getUnits());
+                    ps.setDouble(8, cell.getTotals().getRevenue());
+                    ps.setDouble(9, cell.getTotals().getProfit());
+                    ps.addBatch();
+                } catch (SQLException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+            ps.executeBatch();
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    // Inserts a whole basket as one batch, takes it off Products.stock and adds
+    // it to the hour, day and month rollups, all in a single transaction.
+    public static void insertSales(List<Sale> sales, LocalDateTime soldAt) throws SQLException {
         String sql = "INSERT INTO Sales (product_id, quantity, sale_price, cost_price, sale_date) " +
                 "VALUES (?,?,?,?,?)";
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                for (Sale sale : sales) {
+                    ps.setString(1, sale.getProduct().getId());
+                    ps.setInt(2, sale.getQuantity());
+                    ps.setDouble(3, sale.getSalePrice());
+                    ps.setDouble(4, sale.getCostPrice());
+                    ps.setDate(5, Date.valueOf(sale.getDate()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                Map<String, Integer> stock = new LinkedHashMap<>();
+                for (Sale sale : sales) {
+                    stock.merge(sale.getProduct().getId(), -sale.getQuantity(), Integer::sum);
+                }
+                addToProductStock(con, stock);
+                addToSalesRollups(con, sales, soldAt);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Derby has no simple upsert: try the UPDATE and INSERT the cell only if
+    // no row matched.
+    private static void addToSalesRollups(Connection con, List<Sale> sales, LocalDateTime soldAt) throws SQLException {
+        try (PreparedStatement update = con.prepareStatement(
+                     "UPDATE SalesRollups SET sale_count = sale_count + ?, units = units + ?, " +
+                             "revenue = revenue + ?, profit = profit + ? " +
+                             "WHERE granularity = ? AND bucket = ? AND product_id = ? AND seller_id = ? AND category = ?");
+             PreparedStatement insert = con.prepareStatement(
+                     "INSERT INTO SalesRollups " +
+                             "(granularity, bucket, product_id, seller_id, category, sale_count, units, revenue, profit) " +
+                             "VALUES (?,?,?,?,?,?,?,?,?)")) {
+            for (Sale sale : sales) {
+                String productId = sale.getProduct().getId();
+                int sellerId = sale.getSoldBy() != null ? sale.getSoldBy().getId() : 0;
+                String category = sale.getProduct().getCategory() != null ? sale.getProduct().getCategory().trim() : "";
+                for (SalesRollups.Granularity g : SalesRollups.Granularity.values()) {
+                    long bucket = SalesRollups.bucketOf(g, soldAt);
+                    update.setLong(1, 1);
+                    update.setLong(2, sale.getQuantity());
+                    update.setDouble(3, sale.getRevenue());
+                    update.setDouble(4, sale.getProfit());
+                    update.setString(5, g.name());
+                    update.setLong(6, bucket);
+                    update.setString(7, productId);
+                    update.setInt(8, sellerId);
+                    update.setString(9, category);
+                    if (update.executeUpdate() > 0) continue;
+                    insert.setString(1, g.name());
+                    insert.setLong(2, bucket);
+                    insert.setString(3, productId);
+                    insert.setInt(4, sellerId);
+                    insert.setString(5, category);
+                    insert.setLong(6, 1);
+                    insert.setLong(7, sale.getQuantity());
+                    insert.setDouble(8, sale.getRevenue());
+                    insert.setDouble(9, sale.getProfit());
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    // Writes a product added or edited in the app, expiry date included.
+    // An existing row is overwritten, stock too, since re-adding a product
+    // resets its stock to what was entered.
+    public static void saveProduct(Product p) throws SQLException {
         try (Connection con = getConnection();
-             PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setString(1, productId);
-            ps.setInt(2, qty);
-            ps.setDouble(3, salePrice);
-            ps.setDouble(4, costPrice);
-            ps.setDate(5, Date.valueOf(date));
+             PreparedStatement update = con.prepareStatement(
+                     "UPDATE Products SET name = ?, category = ?, price = ?, stock = ?, reorder_level = ?, " +
+                             "expiry_date = ? WHERE id = ?")) {
+            update.setString(1, p.getName());
+            update.setString(2, p.getCategory());
+            update.setDouble(3, p.getUnitPrice());
+            update.setInt(4, p.getStockLevel());
+            update.setInt(5, p.getReorderLevel());
+            update.setDate(6, p.getExpiryDate() != null ? Date.valueOf(p.getExpiryDate()) : null);
+            update.setString(7, p.getId());
+            if (update.executeUpdate() > 0) return;
+            try (PreparedStatement insert = con.prepareStatement(
+                    "INSERT INTO Products (id, name, category, price, stock, reorder_level, expiry_date) " +
+                            "VALUES (?,?,?,?,?,?,?)")) {
+                insert.setString(1, p.getId());
+                insert.setString(2, p.getName());
+                insert.setString(3, p.getCategory());
+                insert.setDouble(4, p.getUnitPrice());
+                insert.setInt(5, p.getStockLevel());
+                insert.setInt(6, p.getReorderLevel());
+                insert.setDate(7, p.getExpiryDate() != null ? Date.valueOf(p.getExpiryDate()) : null);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    // Replaces the saved lots (oldest first) and the stock by location of
+    // each product, in one transaction.
+    public static void saveStockDetail(Map<String, List<LotQueue.Lot>> lotsByProduct,
+                                       Map<String, Map<String, Integer>> stockByLocation) throws SQLException {
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement delete = con.prepareStatement("DELETE FROM StockLots WHERE product_id = ?");
+                 PreparedStatement insert = con.prepareStatement(
+                         "INSERT INTO StockLots (product_id, seq, quantity, unit_cost, expiry_date) VALUES (?,?,?,?,?)");
+                 PreparedStatement deleteLocations = con.prepareStatement(
+                         "DELETE FROM StockByLocation WHERE product_id = ?");
+                 PreparedStatement insertLocation = con.prepareStatement(
+                         "INSERT INTO StockByLocation (product_id, location_id, quantity) VALUES (?,?,?)")) {
+                for (Map.Entry<String, List<LotQueue.Lot>> e : lotsByProduct.entrySet()) {
+                    delete.setString(1, e.getKey());
+                    delete.addBatch();
+                    int seq = 0;
+                    for (LotQueue.Lot lot : e.getValue()) {
+                        insert.setString(1, e.getKey());
+                        insert.setInt(2, seq++);
+                        insert.setInt(3, lot.getQuantity());
+                        if (Double.isNaN(lot.getUnitCost())) {
+                            insert.setNull(4, Types.DOUBLE);
+                        } else {
+                            insert.setDouble(4, lot.getUnitCost());
+                        }
+                        insert.setDate(5, lot.getExpiryDate() != null ? Date.valueOf(lot.getExpiryDate()) : null);
+                        insert.addBatch();
+                    }
+                }
+                for (Map.Entry<String, Map<String, Integer>> e : stockByLocation.entrySet()) {
+                    deleteLocations.setString(1, e.getKey());
+                    deleteLocations.addBatch();
+                    for (Map.Entry<String, Integer> location : e.getValue().entrySet()) {
+                        insertLocation.setString(1, e.getKey());
+                        insertLocation.setString(2, location.getKey());
+                        insertLocation.setInt(3, location.getValue());
+                        insertLocation.addBatch();
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                deleteLocations.executeBatch();
+                insertLocation.executeBatch();
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    public static void updateProductPrice(String productId, double price) throws SQLException {
+        try (Connection con = getConnection();
+             PreparedStatement ps = con.prepareStatement("UPDATE Products SET price = ? WHERE id = ?")) {
+            ps.setDouble(1, price);
+            ps.setString(2, productId);
             ps.executeUpdate();
         }
     }
+
+    // Products.stock holds each product's total on hand. Every change to it
+    // is written as a delta: sales and receipts inside their own transaction,
+    // everything else (adjustments, approved requests, write-offs) through
+    // updateStock.
+    public static void updateStock(Map<String, Integer> deltas) throws SQLException {
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                addToProductStock(con, deltas);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void addToProductStock(Connection con, Map<String, Integer> deltas) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("UPDATE Products SET stock = stock + ? WHERE id = ?")) {
+            for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+                if (e.getValue() == 0) continue;
+                ps.setInt(1, e.getValue());
+                ps.setString(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Applies a whole receiving run (line quantities, stock deltas and order
+    // statuses) as JDBC batches in a single transaction. Any order or line
+    // whose save failed when it was created is saved first, so every received
+    // line has a row to update; the new line ids are set on the OrderItems
+    // once the transaction commits.
+    public static void saveGoodsReceipt(GoodsReceipt receipt) throws SQLException {
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement lines = con.prepareStatement(
+                         "UPDATE OrderItems SET received_qty = received_qty + ? WHERE id = ?");
+                 PreparedStatement orders = con.prepareStatement(
+                         "UPDATE PurchaseOrders SET status = ? WHERE id = ?")) {
+
+                Map<OrderItem, Integer> newIds = savePurchaseOrders(con, receipt.getPurchaseOrders());
+                for (Map.Entry<OrderItem, Integer> e : receipt.getLineQuantities().entrySet()) {
+                    Integer id = newIds.get(e.getKey());
+                    lines.setInt(1, e.getValue());
+                    lines.setInt(2, id != null ? id : e.getKey().getId());
+                    lines.addBatch();
+                }
+                for (Map.Entry<PurchaseOrder, OrderStatus> e : receipt.getStatusChanges().entrySet()) {
+                    orders.setString(1, e.getValue().name());
+                    orders.setInt(2, e.getKey().getId());
+                    orders.addBatch();
+                }
+
+                lines.executeBatch();
+                addToProductStock(con, receipt.getStockDeltas());
+                orders.executeBatch();
+                con.commit();
+                for (Map.Entry<OrderItem, Integer> e : newIds.entrySet()) {
+                    e.getKey().setId(e.getValue());
+                }
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Saves orders created in the app, such as reorder drafts, headers and
+    // lines in one transaction. The new line ids are set once it commits.
+    public static void savePurchaseOrders(Collection<PurchaseOrder> orders) throws SQLException {
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                Map<OrderItem, Integer> newIds = savePurchaseOrders(con, orders);
+                con.commit();
+                for (Map.Entry<OrderItem, Integer> e : newIds.entrySet()) {
+                    e.getKey().setId(e.getValue());
+                }
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Inserts the header of each order not yet in PurchaseOrders and every
+    // line without an id. Returns the id given to each new line.
+    private static Map<OrderItem, Integer> savePurchaseOrders(Connection con, Collection<PurchaseOrder> orders)
+            throws SQLException {
+        Map<OrderItem, Integer> newIds = new LinkedHashMap<>();
+        try (PreparedStatement exists = con.prepareStatement("SELECT COUNT(*) FROM PurchaseOrders WHERE id = ?");
+             PreparedStatement header = con.prepareStatement(
+                     "INSERT INTO PurchaseOrders (id, supplier_id, created_date, status) VALUES (?,?,?,?)");
+             PreparedStatement line = con.prepareStatement(
+                     "INSERT INTO OrderItems (id, purchase_order_id, product_id, quantity, unit_price, received_qty) " +
+                             "VALUES (?,?,?,?,?,?)")) {
+            int nextId = -1;
+            for (PurchaseOrder po : orders) {
+                exists.setInt(1, po.getId());
+                try (ResultSet rs = exists.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) == 0) {
+                        header.setInt(1, po.getId());
+                        header.setInt(2, po.getSupplier().getId());
+                        header.setDate(3, Date.valueOf(po.getCreatedDate()));
+                        header.setString(4, po.getStatus().name());
+                        header.executeUpdate();
+                    }
+                }
+                boolean unsaved = false;
+                for (OrderItem item : po.getItems()) {
+                    unsaved |= item.getId() == 0;
+                }
+                if (!unsaved) continue;
+                if (nextId < 0) {
+                    try (Statement st = con.createStatement();
+                         ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM OrderItems")) {
+                        rs.next();
+                        nextId = rs.getInt(1) + 1;
+                    }
+                }
+                for (OrderItem item : po.getItems()) {
+                    if (item.getId() != 0) continue;
+                    line.setInt(1, nextId);
+                    line.setInt(2, po.getId());
+                    line.setString(3, item.getProduct().getId());
+                    line.setInt(4, item.getQuantity());
+                    line.setDouble(5, item.getUnitPrice());
+                    line.setInt(6, item.getReceivedQuantity());
+                    line.addBatch();
+                    newIds.put(item, nextId++);
+                }
+            }
+            line.executeBatch();
+        }
+        return newIds;
+    }
 }
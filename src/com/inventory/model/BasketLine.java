@@ -0,0 +1,18 @@
+package com.inventory.model;
+
+public class BasketLine {
+
+    private String productId;
+    private int quantity;
+    private double salePrice;
+
+    public BasketLine(String productId, int quantity, double salePrice) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.salePrice = salePrice;
+    }
+
+    public String getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public double getSalePrice() { return salePrice; }
+}
@@ -0,0 +1,18 @@
+package com.inventory.model;
+
+public class Category {
+
+    private final int code;
+    private final String name;
+
+    public Category(int code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public int getCode() { return code; }
+    public String getName() { return name; }
+
+    @Override
+    public String toString() { return name; }
+}
@@ -0,0 +1,27 @@
+package com.inventory.model;
+
+public class DemandForecast {
+
+    private Product product;
+    private double dailyDemand;
+    private double horizonDemand;
+    private int horizonDays;
+
+    public DemandForecast(Product product, double dailyDemand, double horizonDemand, int horizonDays) {
+        this.product = product;
+        this.dailyDemand = dailyDemand;
+        this.horizonDemand = horizonDemand;
+        this.horizonDays = horizonDays;
+    }
+
+    public Product getProduct() { return product; }
+    public double getDailyDemand() { return dailyDemand; }
+    public double getHorizonDemand() { return horizonDemand; }
+    public int getHorizonDays() { return horizonDays; }
+
+    public double getDaysOfCover() {
+        double perDay = horizonDemand / horizonDays;
+        if (perDay <= 0) return Double.POSITIVE_INFINITY;
+        return product.getStockLevel() / perDay;
+    }
+}
@@ -0,0 +1,40 @@
+package com.inventory.model;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Everything one receiving run changes: quantities received per order line,
+// the resulting stock deltas and the new status of each order.
+public class GoodsReceipt {
+
+    private final Map<OrderItem, Integer> lineQuantities = new LinkedHashMap<>();
+    private final Map<OrderItem, PurchaseOrder> lineOrders = new LinkedHashMap<>();
+    private final Map<String, Integer> stockDeltas = new LinkedHashMap<>();
+    private final Map<PurchaseOrder, OrderStatus> statusChanges = new LinkedHashMap<>();
+
+    public void addLine(PurchaseOrder po, OrderItem item, int quantity) {
+        lineQuantities.merge(item, quantity, Integer::sum);
+        lineOrders.put(item, po);
+        stockDeltas.merge(item.getProduct().getId(), quantity, Integer::sum);
+    }
+
+    public void setStatus(PurchaseOrder po, OrderStatus status) {
+        statusChanges.put(po, status);
+    }
+
+    public Map<OrderItem, Integer> getLineQuantities() { return lineQuantities; }
+    public PurchaseOrder getPurchaseOrder(OrderItem item) { return lineOrders.get(item); }
+    public Map<String, Integer> getStockDeltas() { return stockDeltas; }
+    public Map<PurchaseOrder, OrderStatus> getStatusChanges() { return statusChanges; }
+
+    // Every order this receipt touches.
+    public Set<PurchaseOrder> getPurchaseOrders() {
+        Set<PurchaseOrder> orders = new LinkedHashSet<>(lineOrders.values());
+        orders.addAll(statusChanges.keySet());
+        return orders;
+    }
+
+    public boolean isEmpty() { return lineQuantities.isEmpty(); }
+}
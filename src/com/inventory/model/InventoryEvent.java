@@ -0,0 +1,146 @@
+package com.inventory.model;
+
+import java.time.LocalDate;
+
+// One immutable entry in the inventory ledger. Which fields are used depends
+// on the type; see the factory methods.
+public final class InventoryEvent {
+
+    public enum Type {
+        ITEM_ADDED,
+        STOCK_ADJUSTED,
+        STOCK_TRANSFERRED,
+        SALE,
+        REQUEST_CREATED,
+        REQUEST_APPROVED,
+        REQUEST_REJECTED,
+        PO_CREATED,
+        PO_LINE_ADDED,
+        PO_STATUS_CHANGED,
+        STOCK_RECEIVED,
+        PRICE_CHANGED
+    }
+
+    private final Type type;
+    private final long timestamp;
+    private final String productId;
+    private final int quantity;
+    private final double price;
+    private final double cost;
+    private final int refId;
+    private final int otherId;
+    private final String text1;
+    private final String text2;
+    private final int reorderLevel;
+    private final LocalDate expiryDate;
+
+    public InventoryEvent(Type type, long timestamp, String productId, int quantity,
+                          double price, double cost, int refId, int otherId,
+                          String text1, String text2, int reorderLevel, LocalDate expiryDate) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.price = price;
+        this.cost = cost;
+        this.refId = refId;
+        this.otherId = otherId;
+        this.text1 = text1;
+        this.text2 = text2;
+        this.reorderLevel = reorderLevel;
+        this.expiryDate = expiryDate;
+    }
+
+    // Also recorded when a product is edited, with all its current details.
+    public static InventoryEvent itemAdded(Product p) {
+        return new InventoryEvent(Type.ITEM_ADDED, now(), p.getId(), p.getStockLevel(), p.getUnitPrice(), 0,
+                0, 0, p.getName(), p.getCategory(), p.getReorderLevel(), p.getExpiryDate());
+    }
+
+    public static InventoryEvent stockAdjusted(String productId, String locationId, int delta) {
+        return new InventoryEvent(Type.STOCK_ADJUSTED, now(), productId, delta, 0, 0, 0, 0, locationId, null, 0, null);
+    }
+
+    public static InventoryEvent stockTransferred(String productId, String fromId, String toId, int quantity) {
+        return new InventoryEvent(Type.STOCK_TRANSFERRED, now(), productId, quantity, 0, 0, 0, 0, fromId, toId, 0, null);
+    }
+
+    public static InventoryEvent sale(Sale sale) {
+        int sellerId = sale.getSoldBy() != null ? sale.getSoldBy().getId() : 0;
+        return new InventoryEvent(Type.SALE, now(), sale.getProduct().getId(), sale.getQuantity(),
+                sale.getSalePrice(), sale.getCostPrice(), sellerId, 0, null, null, 0, null);
+    }
+
+    public static InventoryEvent requestCreated(StockRequest r) {
+        int requesterId = r.getRequestedBy() != null ? r.getRequestedBy().getId() : 0;
+        return new InventoryEvent(Type.REQUEST_CREATED, now(), r.getProduct().getId(), r.getQuantity(),
+                r.getSalePrice(), r.getCostPrice(), r.getId(), requesterId, null, null, 0, null);
+    }
+
+    public static InventoryEvent requestApproved(StockRequest r) {
+        int managerId = r.getApprovedBy() != null ? r.getApprovedBy().getId() : 0;
+        return new InventoryEvent(Type.REQUEST_APPROVED, now(), r.getProduct().getId(), r.getQuantity(),
+                r.getSalePrice(), r.getCostPrice(), r.getId(), managerId, null, null, 0, null);
+    }
+
+    public static InventoryEvent requestRejected(StockRequest r) {
+        int managerId = r.getApprovedBy() != null ? r.getApprovedBy().getId() : 0;
+        return new InventoryEvent(Type.REQUEST_REJECTED, now(), r.getProduct().getId(), 0,
+                0, 0, r.getId(), managerId, null, null, 0, null);
+    }
+
+    public static InventoryEvent purchaseOrderCreated(PurchaseOrder po) {
+        int supplierId = po.getSupplier() != null ? po.getSupplier().getId() : 0;
+        return new InventoryEvent(Type.PO_CREATED, now(), null, 0, 0, 0, po.getId(), supplierId, null, null, 0, null);
+    }
+
+    public static InventoryEvent purchaseOrderLineAdded(PurchaseOrder po, OrderItem item) {
+        return new InventoryEvent(Type.PO_LINE_ADDED, now(), item.getProduct().getId(), item.getQuantity(),
+                item.getUnitPrice(), 0, po.getId(), 0, null, null, 0, null);
+    }
+
+    public static InventoryEvent purchaseOrderStatusChanged(PurchaseOrder po, OrderStatus status) {
+        return new InventoryEvent(Type.PO_STATUS_CHANGED, now(), null, 0, 0, 0, po.getId(), 0, status.name(), null, 0, null);
+    }
+
+    public static InventoryEvent stockReceived(PurchaseOrder po, OrderItem item, int quantity) {
+        return new InventoryEvent(Type.STOCK_RECEIVED, now(), item.getProduct().getId(), quantity,
+                0, item.getUnitPrice(), po != null ? po.getId() : 0, 0, null, null, 0, null);
+    }
+
+    public static InventoryEvent priceChanged(Product p) {
+        return new InventoryEvent(Type.PRICE_CHANGED, now(), p.getId(), 0, p.getUnitPrice(), 0, 0, 0, null, null, 0, null);
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    public Type getType() { return type; }
+    public long getTimestamp() { return timestamp; }
+    public String getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public double getPrice() { return price; }
+    public double getCost() { return cost; }
+    public int getRefId() { return refId; }
+    public int getOtherId() { return otherId; }
+    public String getText1() { return text1; }
+    public String getText2() { return text2; }
+    public int getReorderLevel() { return reorderLevel; }
+    public LocalDate getExpiryDate() { return expiryDate; }
+
+    // Change to a product's total stock caused by this event.
+    public int getStockDelta() {
+        switch (type) {
+            case ITEM_ADDED:
+            case STOCK_ADJUSTED:
+            case REQUEST_APPROVED:
+            case STOCK_RECEIVED:
+                return quantity;
+            case SALE:
+                return -quantity;
+            default:
+                return 0;
+        }
+    }
+}
@@ -2,21 +2,51 @@ package com.inventory.model;
 
 public class OrderItem {
 
+    private int id;
     private Product product;
     private int quantity;
     private double unitPrice;
+    private int receivedQuantity;
 
     public OrderItem(Product product, int quantity, double unitPrice) {
+        this(0, product, quantity, unitPrice, 0);
+    }
+
+    public OrderItem(int id, Product product, int quantity, double unitPrice, int receivedQuantity) {
+        this.id = id;
         this.product = product;
         this.quantity = quantity;
         this.unitPrice = unitPrice;
+        this.receivedQuantity = receivedQuantity;
     }
 
+    public int getId() { return id; }
+    // Set once the line has been saved; 0 until then.
+    public void setId(int id) { this.id = id; }
     public Product getProduct() { return product; }
     public int getQuantity() { return quantity; }
     public double getUnitPrice() { return unitPrice; }
+    public int getReceivedQuantity() { return receivedQuantity; }
+
+    public int getOutstandingQuantity() {
+        return quantity - receivedQuantity;
+    }
+
+    public void receive(int qty) {
+        if (qty <= 0 || qty > getOutstandingQuantity()) {
+            throw new IllegalArgumentException("Cannot receive " + qty + " of " + product.getId()
+                    + " (outstanding: " + getOutstandingQuantity() + ")");
+        }
+        receivedQuantity += qty;
+    }
 
     public double getLineTotal() {
         return unitPrice * quantity;
     }
+
+    // Unit price rounded half up to whole cents, times the quantity. Written
+    // as floor(x + 0.5) so loadPurchaseOrders can sum the same thing in SQL.
+    public long getLineTotalCents() {
+        return (long) Math.floor(unitPrice * 100 + 0.5) * quantity;
+    }
 }
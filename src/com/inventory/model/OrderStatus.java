@@ -3,5 +3,6 @@ package com.inventory.model;
 public enum OrderStatus {
     CREATED,
     SUBMITTED,
+    PARTIALLY_RECEIVED,
     RECEIVED
 }
@@ -8,5 +8,13 @@ public class PerishableProduct extends Product {
                              int stockLevel, LocalDate expiryDate, int reorderLevel) {
         super(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel);
     }
+
+    public boolean isExpired(LocalDate today) {
+        return getExpiryDate().isBefore(today);
+    }
+
+    public long daysUntilExpiry(LocalDate today) {
+        return getExpiryDate().toEpochDay() - today.toEpochDay();
+    }
 }
 
@@ -11,6 +11,7 @@ public class Product {
     private int stockLevel;
     private LocalDate expiryDate;
     private int reorderLevel;
+    private int ordinal = -1;
 
     public Product(String id, String name, String category,
                    double unitPrice, int stockLevel,
@@ -28,10 +29,16 @@ public class Product {
     public String getName() { return name; }
     public String getCategory() { return category; }
     public double getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(double unitPrice) { this.unitPrice = unitPrice; }
     public int getStockLevel() { return stockLevel; }
     public void setStockLevel(int stockLevel) { this.stockLevel = stockLevel; }
+    public LocalDate getExpiryDate() { return expiryDate; }
     public int getReorderLevel() { return reorderLevel; }
 
+    // Dense index assigned by InventoryService when the product is registered.
+    public int getOrdinal() { return ordinal; }
+    public void setOrdinal(int ordinal) { this.ordinal = ordinal; }
+
     public boolean isLowStock() {
         return stockLevel <= reorderLevel;
     }
@@ -0,0 +1,15 @@
+package com.inventory.model;
+
+public class ProductSalesCount {
+
+    private final Product product;
+    private final long units;
+
+    public ProductSalesCount(Product product, long units) {
+        this.product = product;
+        this.units = units;
+    }
+
+    public Product getProduct() { return product; }
+    public long getUnits() { return units; }
+}
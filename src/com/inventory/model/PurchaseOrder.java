@@ -13,6 +13,12 @@ public class PurchaseOrder {
     private OrderStatus status;
     private List<OrderItem> items = new ArrayList<>();
 
+    // Running totals, kept in cents so repeated additions don't drift.
+    private long totalCents;
+    private long totalUnits;
+    private int lineCount;
+    private PurchaseOrderListener listener;
+
     public PurchaseOrder(int id, Supplier supplier, InventoryManager createdBy) {
         this.id = id;
         this.supplier = supplier;
@@ -25,16 +31,76 @@ public class PurchaseOrder {
     public Supplier getSupplier() { return supplier; }
     public InventoryManager getCreatedBy() { return createdBy; }
     public LocalDate getCreatedDate() { return createdDate; }
-    public void setCreatedDate(LocalDate createdDate) { this.createdDate = createdDate; }
     public OrderStatus getStatus() { return status; }
-    public void setStatus(OrderStatus status) { this.status = status; }
-    public List<OrderItem> getItems() { return items; }
+    // Empty until the lines have been loaded; see InventoryService.getOrderItems.
+    public List<OrderItem> getItems() { return items != null ? items : new ArrayList<>(); }
+    public boolean isItemsLoaded() { return items != null; }
+
+    public void setListener(PurchaseOrderListener listener) { this.listener = listener; }
+
+    public void setCreatedDate(LocalDate createdDate) {
+        change(() -> this.createdDate = createdDate);
+    }
 
+    public void setStatus(OrderStatus status) {
+        change(() -> this.status = status);
+    }
+
+    // The lines of a header-only order must be loaded first, or the totals
+    // would count a line that the list doesn't hold.
     public void addItem(OrderItem item) {
-        items.add(item);
+        if (items == null) {
+            throw new IllegalStateException("Lines of PO #" + id + " are not loaded.");
+        }
+        change(() -> {
+            items.add(item);
+            totalCents += item.getLineTotalCents();
+            totalUnits += item.getQuantity();
+            lineCount++;
+        });
+    }
+
+    // Header-only order: the totals come from the database and the lines are
+    // fetched on first access.
+    public void loadAsHeader(long totalCents, long totalUnits, int lineCount) {
+        change(() -> {
+            this.items = null;
+            this.totalCents = totalCents;
+            this.totalUnits = totalUnits;
+            this.lineCount = lineCount;
+        });
     }
 
+    public void setItems(List<OrderItem> items) {
+        change(() -> {
+            this.items = items;
+            totalCents = 0;
+            totalUnits = 0;
+            for (OrderItem item : items) {
+                totalCents += item.getLineTotalCents();
+                totalUnits += item.getQuantity();
+            }
+            lineCount = items.size();
+        });
+    }
+
+    public void releaseItems() {
+        this.items = null;
+    }
+
+    public long getTotalCents() { return totalCents; }
+    public long getTotalUnits() { return totalUnits; }
+    public int getLineCount() { return lineCount; }
+
     public double getTotalAmount() {
-        return items.stream().mapToDouble(OrderItem::getLineTotal).sum();
+        return totalCents / 100.0;
+    }
+
+    private void change(Runnable change) {
+        if (listener != null) {
+            listener.change(this, change);
+        } else {
+            change.run();
+        }
     }
 }
@@ -0,0 +1,9 @@
+package com.inventory.model;
+
+// Applies every change to an order's totals, status or date, so that
+// aggregates can take the old figures out and put the new ones in as one
+// step that readers never see half done.
+public interface PurchaseOrderListener {
+    // Must run 'change' exactly once.
+    void change(PurchaseOrder po, Runnable change);
+}
@@ -1,21 +1,73 @@
 package com.inventory.model;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+// Report metadata; the text itself lives in 'file' and is read back a page
+// at a time, or streamed whole with openStream.
 public class Report {
 
     private int id;
     private InventoryManager createdBy;
     private ReportType type;
-    private String content;
+    private LocalDateTime createdAt;
+    private Path file;
+    private long lineCount;
+    private long[] pageOffsets;
 
-    public Report(int id, InventoryManager createdBy, ReportType type, String content) {
+    public Report(int id, InventoryManager createdBy, ReportType type, LocalDateTime createdAt,
+                  Path file, long lineCount, long[] pageOffsets) {
         this.id = id;
         this.createdBy = createdBy;
         this.type = type;
-        this.content = content;
+        this.createdAt = createdAt;
+        this.file = file;
+        this.lineCount = lineCount;
+        this.pageOffsets = pageOffsets;
     }
 
     public int getId() { return id; }
     public InventoryManager getCreatedBy() { return createdBy; }
     public ReportType getType() { return type; }
-    public String getContent() { return content; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public Path getFile() { return file; }
+    public long getLineCount() { return lineCount; }
+    public int getPageCount() { return pageOffsets.length; }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    // The text of one page of up to ReportWriter.PAGE_LINES lines.
+    public String readPage(int page) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = pageOffsets[page];
+            long end = page + 1 < pageOffsets.length ? pageOffsets[page + 1] : ch.size();
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while (bytes.hasRemaining()) {
+                if (ch.read(bytes, start + bytes.position()) < 0) break;
+            }
+            return new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The whole text; fine for short reports, use readPage or openStream for
+    // long ones.
+    public String getContent() {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
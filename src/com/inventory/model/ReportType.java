@@ -4,5 +4,12 @@ public enum ReportType {
     STOCK_SUMMARY,
     LOW_STOCK,
     SALES_SUMMARY,
-    PURCHASE_ORDERS
+    PURCHASE_ORDERS,
+    DEMAND_FORECAST,
+    EXPIRING,
+    EXPIRY_WRITE_OFF,
+    STOCK_AS_OF,
+    CATEGORY_SUMMARY,
+    BEST_SELLERS,
+    LEDGER_CHECK
 }
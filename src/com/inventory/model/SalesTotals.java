@@ -0,0 +1,25 @@
+package com.inventory.model;
+
+public class SalesTotals {
+
+    private long saleCount;
+    private long units;
+    private double revenue;
+    private double profit;
+
+    public long getSaleCount() { return saleCount; }
+    public long getUnits() { return units; }
+    public double getRevenue() { return revenue; }
+    public double getProfit() { return profit; }
+
+    public void add(long saleCount, long units, double revenue, double profit) {
+        this.saleCount += saleCount;
+        this.units += units;
+        this.revenue += revenue;
+        this.profit += profit;
+    }
+
+    public void add(SalesTotals other) {
+        add(other.saleCount, other.units, other.revenue, other.profit);
+    }
+}
@@ -0,0 +1,134 @@
+package com.inventory.service;
+
+import com.inventory.model.Category;
+
+import java.util.*;
+
+// Categories as a dictionary: each distinct name (ignoring case) gets a small
+// int code and one shared String. For every category it keeps a BitSet of
+// member product ordinals and running SKU, unit and stock value totals, which
+// are adjusted as products are added or their stock changes.
+public class CategoryIndex {
+
+    public static class Totals {
+        private int skus;
+        private long units;
+        private long valueCents;
+
+        private Totals() {}
+
+        private Totals(Totals other) {
+            this.skus = other.skus;
+            this.units = other.units;
+            this.valueCents = other.valueCents;
+        }
+
+        public int getSkus() { return skus; }
+        public long getUnits() { return units; }
+        public long getValueCents() { return valueCents; }
+        public double getValue() { return valueCents / 100.0; }
+    }
+
+    private static final int NONE = -1;
+
+    private final Map<String, Category> byKey = new HashMap<>();
+    private final List<Category> byCode = new ArrayList<>();
+    private final List<BitSet> members = new ArrayList<>();
+    private final List<Totals> totals = new ArrayList<>();
+
+    // Per product ordinal: category code and the units/price last counted.
+    private int[] productCodes = new int[0];
+    private int[] productUnits = new int[0];
+    private long[] productPriceCents = new long[0];
+
+    public synchronized Category intern(String name) {
+        String trimmed = name == null ? "" : name.trim();
+        String key = trimmed.toLowerCase();
+        Category c = byKey.get(key);
+        if (c == null) {
+            c = new Category(byCode.size(), trimmed);
+            byKey.put(key, c);
+            byCode.add(c);
+            members.add(new BitSet());
+            totals.add(new Totals());
+        }
+        return c;
+    }
+
+    public synchronized Category get(String name) {
+        return name == null ? null : byKey.get(name.trim().toLowerCase());
+    }
+
+    public synchronized Category get(int code) {
+        return code >= 0 && code < byCode.size() ? byCode.get(code) : null;
+    }
+
+    public synchronized List<Category> getCategories() {
+        return new ArrayList<>(byCode);
+    }
+
+    // Adds the product to a category, moving it out of its previous one.
+    public synchronized void put(int ordinal, Category category, int units, double unitPrice) {
+        ensureCapacity(ordinal);
+        int old = productCodes[ordinal];
+        if (old != NONE) {
+            members.get(old).clear(ordinal);
+            Totals t = totals.get(old);
+            t.skus--;
+            t.units -= productUnits[ordinal];
+            t.valueCents -= productUnits[ordinal] * productPriceCents[ordinal];
+        }
+        productCodes[ordinal] = category.getCode();
+        productUnits[ordinal] = units;
+        productPriceCents[ordinal] = Math.round(unitPrice * 100);
+        members.get(category.getCode()).set(ordinal);
+        Totals t = totals.get(category.getCode());
+        t.skus++;
+        t.units += units;
+        t.valueCents += units * productPriceCents[ordinal];
+    }
+
+    public synchronized void updateUnits(int ordinal, int units) {
+        if (ordinal >= productCodes.length || productCodes[ordinal] == NONE) return;
+        int delta = units - productUnits[ordinal];
+        if (delta == 0) return;
+        productUnits[ordinal] = units;
+        Totals t = totals.get(productCodes[ordinal]);
+        t.units += delta;
+        t.valueCents += delta * productPriceCents[ordinal];
+    }
+
+    // Ordinals of every product in any of the given categories.
+    public synchronized BitSet membersOf(Collection<String> names) {
+        BitSet result = new BitSet();
+        for (String name : names) {
+            Category c = get(name);
+            if (c != null) result.or(members.get(c.getCode()));
+        }
+        return result;
+    }
+
+    public synchronized Totals getTotals(String name) {
+        Category c = get(name);
+        return c != null ? new Totals(totals.get(c.getCode())) : null;
+    }
+
+    public synchronized Map<Category, Totals> getAllTotals() {
+        Map<Category, Totals> result = new LinkedHashMap<>();
+        for (Category c : byCode) {
+            Totals t = totals.get(c.getCode());
+            if (t.skus > 0) result.put(c, new Totals(t));
+        }
+        return result;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < productCodes.length) return;
+        int n = Math.max(16, Math.max(ordinal + 1, productCodes.length * 2));
+        int old = productCodes.length;
+        productCodes = Arrays.copyOf(productCodes, n);
+        Arrays.fill(productCodes, old, n, NONE);
+        productUnits = Arrays.copyOf(productUnits, n);
+        productPriceCents = Arrays.copyOf(productPriceCents, n);
+    }
+}
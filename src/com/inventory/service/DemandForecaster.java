@@ -0,0 +1,107 @@
+package com.inventory.service;
+
+import com.inventory.model.DemandForecast;
+import com.inventory.model.Product;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Holt (level + trend) exponential smoothing of daily units sold per product.
+// Sales for the current day are accumulated and folded into the model when a
+// later day is seen, so each recorded sale costs O(1). States are indexed by
+// product ordinal.
+public class DemandForecaster {
+
+    public static final double ALPHA = 0.3;
+    public static final double BETA = 0.1;
+    // Longer gaps without sales are folded in as this many zero days.
+    private static final int MAX_GAP_DAYS = 90;
+
+    private static class State {
+        long openDay = Long.MIN_VALUE;
+        double openUnits;
+        double level;
+        double trend;
+        boolean initialized;
+
+        void observe(long day, int quantity) {
+            if (openDay == Long.MIN_VALUE) {
+                openDay = day;
+            } else if (day > openDay) {
+                rollTo(day);
+            }
+            openUnits += quantity; // late sales count toward the open day
+        }
+
+        // Closes the open day and any empty days before 'day'.
+        void rollTo(long day) {
+            if (openDay == Long.MIN_VALUE || day <= openDay) return;
+            update(openUnits);
+            long empty = Math.min(day - openDay - 1, MAX_GAP_DAYS);
+            for (long i = 0; i < empty; i++) {
+                update(0);
+            }
+            openDay = day;
+            openUnits = 0;
+        }
+
+        void update(double units) {
+            if (!initialized) {
+                level = units;
+                trend = 0;
+                initialized = true;
+                return;
+            }
+            double prevLevel = level;
+            level = ALPHA * units + (1 - ALPHA) * (level + trend);
+            trend = BETA * (level - prevLevel) + (1 - BETA) * trend;
+        }
+
+        double forecast(int daysAhead) {
+            if (!initialized) return openUnits;
+            return Math.max(0, level + trend * daysAhead);
+        }
+    }
+
+    private final OrdinalMap<State> states = new OrdinalMap<>();
+
+    public void observe(int ordinal, int quantity, LocalDate date) {
+        State s = states.computeIfAbsent(ordinal, k -> new State());
+        synchronized (s) {
+            s.observe(date.toEpochDay(), quantity);
+        }
+    }
+
+    public double dailyDemand(int ordinal, LocalDate today) {
+        State s = states.get(ordinal);
+        if (s == null) return 0.0;
+        synchronized (s) {
+            s.rollTo(today.toEpochDay());
+            return s.forecast(1);
+        }
+    }
+
+    public DemandForecast forecast(Product product, LocalDate today, int horizonDays) {
+        State s = states.get(product.getOrdinal());
+        if (s == null) {
+            return new DemandForecast(product, 0, 0, horizonDays);
+        }
+        double total = 0;
+        double daily;
+        synchronized (s) {
+            s.rollTo(today.toEpochDay());
+            daily = s.forecast(1);
+            for (int h = 1; h <= horizonDays; h++) {
+                total += s.forecast(h);
+            }
+        }
+        return new DemandForecast(product, daily, total, horizonDays);
+    }
+
+    public Map<String, DemandForecast> forecastAll(Collection<Product> products, LocalDate today, int horizonDays) {
+        return products.parallelStream()
+                .collect(Collectors.toConcurrentMap(Product::getId, p -> forecast(p, today, horizonDays)));
+    }
+}
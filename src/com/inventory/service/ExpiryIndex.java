@@ -0,0 +1,47 @@
+package com.inventory.service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Product ids bucketed by expiry day, so "what expires before X" only touches
+// the buckets in range instead of the whole catalogue.
+public class ExpiryIndex {
+
+    private final NavigableMap<Long, Set<String>> byDay = new TreeMap<>();
+    private final Map<String, Long> dayOf = new HashMap<>();
+
+    public synchronized void put(String productId, LocalDate expiryDate) {
+        remove(productId);
+        if (expiryDate == null) return;
+        long day = expiryDate.toEpochDay();
+        byDay.computeIfAbsent(day, d -> new LinkedHashSet<>()).add(productId);
+        dayOf.put(productId, day);
+    }
+
+    public synchronized void remove(String productId) {
+        Long day = dayOf.remove(productId);
+        if (day == null) return;
+        Set<String> ids = byDay.get(day);
+        ids.remove(productId);
+        if (ids.isEmpty()) {
+            byDay.remove(day);
+        }
+    }
+
+    // Ids expiring on or before 'last', earliest first.
+    public synchronized List<String> expiringOnOrBefore(LocalDate last) {
+        List<String> result = new ArrayList<>();
+        for (Set<String> ids : byDay.headMap(last.toEpochDay(), true).values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+
+    public synchronized List<String> expiringBetween(LocalDate first, LocalDate last) {
+        List<String> result = new ArrayList<>();
+        for (Set<String> ids : byDay.subMap(first.toEpochDay(), true, last.toEpochDay(), true).values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package com.inventory.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically writes off stock that has passed its expiry date. The sweep
+// only visits expired products, so it is cheap enough to run on applyExecutor
+// (the Swing thread in the app) alongside other inventory changes.
+public class ExpirySweeper {
+
+    private final InventoryService service;
+    private final Executor applyExecutor;
+    private ScheduledExecutorService scheduler;
+
+    public ExpirySweeper(InventoryService service, Executor applyExecutor) {
+        this.service = service;
+        this.applyExecutor = applyExecutor;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expiry-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(
+                () -> applyExecutor.execute(() -> service.writeOffExpired(LocalDate.now())),
+                0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.inventory.service;
+
+import com.inventory.model.InventoryEvent;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+// Append-only binary log of InventoryEvents, with a live projection and
+// periodic snapshots.
+//
+// Each record is a 2-byte length, the event type, the timestamp and a
+// presence byte, followed by only the fields that are set. A type byte with
+// its high bit set is followed by a second presence byte for the product
+// details an ITEM_ADDED carries. Every
+// SNAPSHOT_INTERVAL events the projection is written to a snapshot file along
+// with the log offset it covers, so replay reads the snapshot and then only
+// the events after it. A record cut short by a crash is dropped on open.
+//
+// Appends are group-committed: append only queues the event, and a writer
+// thread writes whatever has queued up with one flush, then applies it to
+// the projection and the listeners. sync() waits for everything appended so
+// far; the read methods sync first, so they always see every event.
+public class InventoryLedger implements Closeable {
+
+    public static final int SNAPSHOT_INTERVAL = 10_000;
+
+    // An older snapshot is ignored, so the log is replayed in full once.
+    private static final int SNAPSHOT_MAGIC = 0x494C5332; // "ILS2"
+    private static final int MAX_RECORD = 0xFFFF;
+    private static final InventoryEvent.Type[] TYPES = InventoryEvent.Type.values();
+    // Queued by close() to stop the writer.
+    private static final InventoryEvent STOP = new InventoryEvent(TYPES[0], 0, null, 0, 0, 0, 0, 0, null, null, 0, null);
+
+    private static final int HAS_PRODUCT = 1;
+    private static final int HAS_QUANTITY = 1 << 1;
+    private static final int HAS_PRICE = 1 << 2;
+    private static final int HAS_COST = 1 << 3;
+    private static final int HAS_REF = 1 << 4;
+    private static final int HAS_OTHER = 1 << 5;
+    private static final int HAS_TEXT1 = 1 << 6;
+    private static final int HAS_TEXT2 = 1 << 7;
+    private static final int EXTENDED = 0x80;
+    private static final int HAS_REORDER = 1;
+    private static final int HAS_EXPIRY = 1 << 1;
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final LedgerProjection projection;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private DataOutputStream out;
+    private long offset;
+    private long sinceSnapshot;
+
+    private final BlockingQueue<InventoryEvent> queue = new LinkedBlockingQueue<>();
+    private final List<Consumer<InventoryEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread writer;
+    // Guarded by queue: appends and close agree on whether more may come.
+    private long appended;
+    private boolean closed;
+    // Guarded by this.
+    private long written;
+    private IOException failure;
+
+    public InventoryLedger(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.logFile = directory.resolve("events.log");
+        this.snapshotFile = directory.resolve("snapshot.bin");
+
+        Replay replay = replay();
+        this.projection = replay.projection;
+        this.offset = replay.endOffset;
+        this.sinceSnapshot = replay.eventsAfterSnapshot;
+
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (ch.size() > offset) {
+                ch.truncate(offset);
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(logFile, StandardOpenOption.APPEND), 1 << 16));
+
+        writer = new Thread(this::runWriter, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queues the event and returns; the writer thread puts it on disk.
+    public void append(InventoryEvent event) throws IOException {
+        synchronized (queue) {
+            if (closed) {
+                throw new IOException("Ledger is closed.");
+            }
+            appended++;
+            queue.add(event);
+        }
+    }
+
+    // Called on the writer thread with each event once it is written.
+    public void addListener(Consumer<InventoryEvent> listener) {
+        listeners.add(listener);
+    }
+
+    // Waits until every event appended so far is written. Throws the last
+    // write failure, if there was one since the previous sync.
+    public void sync() throws IOException {
+        long target;
+        synchronized (queue) {
+            target = appended;
+        }
+        synchronized (this) {
+            while (written < target) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the ledger.");
+                }
+            }
+            if (failure != null) {
+                IOException f = failure;
+                failure = null;
+                throw f;
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<InventoryEvent> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            // Nothing is queued after STOP, so it can only be last.
+            boolean stop = batch.get(batch.size() - 1) == STOP;
+            if (stop) batch.remove(batch.size() - 1);
+            write(batch);
+            batch.clear();
+            if (stop) return;
+        }
+    }
+
+    // One flush for the whole batch. Events are applied only once written;
+    // after a failure the rest of the batch is dropped and reported by sync().
+    private synchronized void write(List<InventoryEvent> batch) {
+        int done = 0;
+        try {
+            for (InventoryEvent event : batch) {
+                recordBytes.reset();
+                encode(event, record);
+                if (recordBytes.size() > MAX_RECORD) {
+                    throw new IOException("Ledger event too large: " + recordBytes.size() + " bytes");
+                }
+                out.writeShort(recordBytes.size());
+                recordBytes.writeTo(out);
+                offset += 2 + recordBytes.size();
+                done++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            failure = e;
+        }
+        for (int i = 0; i < done; i++) {
+            InventoryEvent event = batch.get(i);
+            projection.apply(event);
+            for (Consumer<InventoryEvent> listener : listeners) {
+                listener.accept(event);
+            }
+        }
+        sinceSnapshot += done;
+        if (sinceSnapshot >= SNAPSHOT_INTERVAL) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        written += batch.size();
+        notifyAll();
+    }
+
+    public void snapshot() throws IOException {
+        sync();
+        synchronized (this) {
+            writeSnapshot();
+        }
+    }
+
+    // Writes the projection to a temp file and moves it over the old snapshot,
+    // so a crash mid-write leaves the previous snapshot intact.
+    private void writeSnapshot() throws IOException {
+        out.flush();
+        Path tmp = snapshotFile.resolveSibling("snapshot.tmp");
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            s.writeInt(SNAPSHOT_MAGIC);
+            s.writeLong(offset);
+            projection.writeTo(s);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceSnapshot = 0;
+    }
+
+    public boolean isEmpty() throws IOException {
+        sync();
+        synchronized (this) {
+            return offset == 0;
+        }
+    }
+
+    public long getEventCount() throws IOException {
+        sync();
+        synchronized (this) {
+            return projection.getEventCount();
+        }
+    }
+
+    // A copy of the live projection.
+    public LedgerProjection getProjection() throws IOException {
+        sync();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        synchronized (this) {
+            projection.writeTo(new DataOutputStream(bytes));
+        }
+        return LedgerProjection.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    // Rebuilds the projection from disk: latest snapshot plus the events after it.
+    public LedgerProjection rebuild() throws IOException {
+        sync();
+        return replay().projection;
+    }
+
+    // Streams every event in the log, oldest first. Returns the offset just
+    // past the last complete record.
+    public long forEachEvent(Consumer<InventoryEvent> consumer) throws IOException {
+        sync();
+        return read(0, consumer);
+    }
+
+    // Writes what is still queued, then stops the writer and closes the log.
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (closed) return;
+            closed = true;
+            queue.add(STOP);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted closing the ledger.");
+        }
+        synchronized (this) {
+            out.close();
+            out = null;
+        }
+        sync();
+    }
+
+    // ---------- Replay ----------
+
+    private static class Replay {
+        LedgerProjection projection;
+        long endOffset;
+        long eventsAfterSnapshot;
+    }
+
+    private Replay replay() throws IOException {
+        Replay r = new Replay();
+        long start = 0;
+        r.projection = new LedgerProjection();
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                if (in.readInt() == SNAPSHOT_MAGIC) {
+                    long snapshotOffset = in.readLong();
+                    if (Files.exists(logFile) && Files.size(logFile) >= snapshotOffset) {
+                        start = snapshotOffset;
+                        r.projection = LedgerProjection.readFrom(in);
+                    }
+                }
+            }
+        }
+        LedgerProjection projection = r.projection;
+        long[] count = new long[1];
+        r.endOffset = read(start, e -> {
+            projection.apply(e);
+            count[0]++;
+        });
+        r.eventsAfterSnapshot = count[0];
+        return r;
+    }
+
+    private long read(long from, Consumer<InventoryEvent> consumer) throws IOException {
+        if (!Files.exists(logFile)) return 0;
+        long position = from;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(logFile), 1 << 16))) {
+            in.skipNBytes(from);
+            while (true) {
+                InventoryEvent event;
+                int length;
+                try {
+                    length = in.readUnsignedShort();
+                    event = decode(in);
+                } catch (EOFException e) {
+                    return position;
+                }
+                consumer.accept(event);
+                position += 2 + length;
+            }
+        }
+    }
+
+    // ---------- Encoding ----------
+
+    private static void encode(InventoryEvent e, DataOutputStream out) throws IOException {
+        int flags = 0;
+        if (e.getProductId() != null) flags |= HAS_PRODUCT;
+        if (e.getQuantity() != 0) flags |= HAS_QUANTITY;
+        if (e.getPrice() != 0) flags |= HAS_PRICE;
+        if (e.getCost() != 0) flags |= HAS_COST;
+        if (e.getRefId() != 0) flags |= HAS_REF;
+        if (e.getOtherId() != 0) flags |= HAS_OTHER;
+        if (e.getText1() != null) flags |= HAS_TEXT1;
+        if (e.getText2() != null) flags |= HAS_TEXT2;
+        int more = 0;
+        if (e.getReorderLevel() != 0) more |= HAS_REORDER;
+        if (e.getExpiryDate() != null) more |= HAS_EXPIRY;
+
+        out.writeByte(e.getType().ordinal() | (more != 0 ? EXTENDED : 0));
+        out.writeLong(e.getTimestamp());
+        out.writeByte(flags);
+        if (more != 0) out.writeByte(more);
+        if ((flags & HAS_PRODUCT) != 0) out.writeUTF(e.getProductId());
+        if ((flags & HAS_QUANTITY) != 0) out.writeInt(e.getQuantity());
+        if ((flags & HAS_PRICE) != 0) out.writeDouble(e.getPrice());
+        if ((flags & HAS_COST) != 0) out.writeDouble(e.getCost());
+        if ((flags & HAS_REF) != 0) out.writeInt(e.getRefId());
+        if ((flags & HAS_OTHER) != 0) out.writeInt(e.getOtherId());
+        if ((flags & HAS_TEXT1) != 0) out.writeUTF(e.getText1());
+        if ((flags & HAS_TEXT2) != 0) out.writeUTF(e.getText2());
+        if ((more & HAS_REORDER) != 0) out.writeInt(e.getReorderLevel());
+        if ((more & HAS_EXPIRY) != 0) out.writeLong(e.getExpiryDate().toEpochDay());
+    }
+
+    private static InventoryEvent decode(DataInputStream in) throws IOException {
+        int typeByte = in.readUnsignedByte();
+        InventoryEvent.Type type = TYPES[typeByte & ~EXTENDED];
+        long timestamp = in.readLong();
+        int flags = in.readUnsignedByte();
+        int more = (typeByte & EXTENDED) != 0 ? in.readUnsignedByte() : 0;
+        String productId = (flags & HAS_PRODUCT) != 0 ? in.readUTF() : null;
+        int quantity = (flags & HAS_QUANTITY) != 0 ? in.readInt() : 0;
+        double price = (flags & HAS_PRICE) != 0 ? in.readDouble() : 0;
+        double cost = (flags & HAS_COST) != 0 ? in.readDouble() : 0;
+        int refId = (flags & HAS_REF) != 0 ? in.readInt() : 0;
+        int otherId = (flags & HAS_OTHER) != 0 ? in.readInt() : 0;
+        String text1 = (flags & HAS_TEXT1) != 0 ? in.readUTF() : null;
+        String text2 = (flags & HAS_TEXT2) != 0 ? in.readUTF() : null;
+        int reorderLevel = (more & HAS_REORDER) != 0 ? in.readInt() : 0;
+        LocalDate expiryDate = (more & HAS_EXPIRY) != 0 ? LocalDate.ofEpochDay(in.readLong()) : null;
+        if (type == InventoryEvent.Type.ITEM_ADDED && (typeByte & EXTENDED) == 0 && refId != 0) {
+            // Written before ITEM_ADDED had its own reorder level field.
+            reorderLevel = refId;
+            refId = 0;
+        }
+        return new InventoryEvent(type, timestamp, productId, quantity, price, cost,
+                refId, otherId, text1, text2, reorderLevel, expiryDate);
+    }
+}
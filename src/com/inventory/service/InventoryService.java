@@ -3,20 +3,79 @@ package com.inventory.service;
 import com.inventory.db.DatabaseHelper;
 import com.inventory.model.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.YearMonth;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 public class InventoryService {
 
-    Map<String, Product> products = new HashMap<>();
-    Map<Integer, Supplier> suppliers = new HashMap<>();
-    Map<Integer, Customer> customers = new HashMap<>();
-    List<PurchaseOrder> purchaseOrders = new ArrayList<>();
-    List<Report> reports = new ArrayList<>();
+    final ProductTable products = new ProductTable();
+    IntObjectMap<Supplier> suppliers = new IntObjectMap<>();
+    IntObjectMap<Customer> customers = new IntObjectMap<>();
+    // Versioned lists: writers publish a new version, readers get the
+    // current one without a copy or a lock. Writers, the by-id maps and the
+    // id counters below are guarded by listLock.
+    private final Object listLock = new Object();
+    volatile PersistentVector<PurchaseOrder> purchaseOrders = PersistentVector.empty();
+    IntObjectMap<PurchaseOrder> purchaseOrdersById = new IntObjectMap<>();
+    volatile PersistentVector<Report> reports = PersistentVector.empty();
     List<Sale> sales = new ArrayList<>();
-    List<StockRequest> stockRequests = new ArrayList<>();
+    volatile PersistentVector<StockRequest> stockRequests = PersistentVector.empty();
+    IntObjectMap<StockRequest> stockRequestsById = new IntObjectMap<>();
+
+    private final CategoryIndex categories = new CategoryIndex();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    private final OrdinalMap<Product> lowStock = new OrdinalMap<>();
+    private final RangeIndex priceIndex = new RangeIndex("price");
+    private final RangeIndex stockIndex = new RangeIndex("stock");
+    private final RangeIndex stockValueIndex = new RangeIndex("stock value");
+    private final SalesLeaderboard leaderboard = new SalesLeaderboard();
+    private final SalesRollups salesRollups = new SalesRollups();
+    private final IntObjectMap<Account> sellers = new IntObjectMap<>();
+    private final ProductQueryEngine queryEngine = new ProductQueryEngine(products, categories,
+            searchIndex, lowStock, priceIndex, stockIndex, stockValueIndex);
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
+    private final OrdinalMap<LotQueue> lots = new OrdinalMap<>();
+    private final Object stockDetailLock = new Object();
+
+    public static final String DEFAULT_LOCATION = "MAIN";
+    private final LocationStock locationStock = new LocationStock(products::get);
+    private final StockReservations reservations = new StockReservations(locationStock, 1000, 512, 1024);
+    private final DemandForecaster demandForecaster = new DemandForecaster();
+    private final Map<String, Integer> preferredSuppliers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> quantityOnOrder = new ConcurrentHashMap<>();
+    // Low-stock products whose stock changed since the reorder planner last
+    // looked. Each is queued once until the planner takes it.
+    private final Queue<Product> reorderQueue = new ConcurrentLinkedQueue<>();
+    private final OrdinalMap<Product> reorderPending = new OrdinalMap<>();
+
+    private final PurchaseOrderStats purchaseOrderStats = new PurchaseOrderStats();
+    private InventoryLedger ledger;
+    private final StockHistory stockHistory = new StockHistory();
+
+    private static final int ORDER_ITEMS_CACHE_SIZE = 64;
+    private final Map<Integer, PurchaseOrder> loadedOrderItems =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, PurchaseOrder> eldest) {
+                    if (size() > ORDER_ITEMS_CACHE_SIZE) {
+                        eldest.getValue().releaseItems();
+                        return true;
+                    }
+                    return false;
+                }
+            };
 
     int nextSupplierId = 1;
     int nextCustomerId = 1;
@@ -24,57 +83,598 @@ public class InventoryService {
     int nextReportId = 1;
     int nextStockRequestId = 1;
 
-    private double totalRevenue = 0.0;
-    private double totalProfit = 0.0;
+    public static final int DEFAULT_SALES_RETENTION_DAYS = 90;
+    private SalesArchive salesArchive;
+    private int salesRetentionDays = DEFAULT_SALES_RETENTION_DAYS;
+    private Path reportDirectory = Paths.get("Reports");
 
     private InventoryManager defaultManager =
             new InventoryManager(1, "Default Manager", "manager@example.com");
 
+    public InventoryService() {
+        locationStock.addLocation(new Location(DEFAULT_LOCATION, "Main Store"));
+        locationStock.addLocation(new Location("BACK", "Back Room"));
+    }
+
+    // ---------- Ledger ----------
+
+    // Starts recording changes to the ledger and loads its history for
+    // point-in-time queries. The database is the source of truth: its
+    // transactions commit before the ledger's writer has put the matching
+    // events on disk, so after a crash the ledger can be behind. Where the
+    // ledger's projection disagrees with what was loaded, the database is
+    // kept, the differences go into a LEDGER_CHECK report, and the product is
+    // recorded again so the ledger agrees from here on. Products the ledger
+    // doesn't know yet, all of them for an empty ledger, are recorded too.
+    public void attachLedger(InventoryLedger ledger) {
+        LedgerProjection projection = null;
+        try {
+            ledger.forEachEvent(stockHistory::apply);
+            if (!ledger.isEmpty()) {
+                projection = ledger.getProjection();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        ledger.addListener(stockHistory::apply);
+        this.ledger = ledger;
+
+        List<String> differences = new ArrayList<>();
+        for (Product p : products.values()) {
+            LedgerProjection.ProductState state = projection != null ? projection.getProduct(p.getId()) : null;
+            if (state == null || compareWithLedger(p, state, differences)) {
+                record(InventoryEvent.itemAdded(p));
+            }
+        }
+        if (projection != null) {
+            for (String id : new TreeSet<>(projection.getProducts().keySet())) {
+                if (products.get(id) == null) {
+                    differences.add(id + ": in the ledger but not in the database");
+                }
+            }
+            // Stock requests are kept in memory only; new ones mustn't reuse
+            // the ids the ledger already holds.
+            synchronized (listLock) {
+                nextStockRequestId = Math.max(nextStockRequestId, projection.getLastRequestId() + 1);
+            }
+        }
+        if (!differences.isEmpty()) {
+            try {
+                writeReport(ReportType.LEDGER_CHECK, out -> {
+                    out.line("LEDGER CHECK");
+                    out.line("============");
+                    out.line("The ledger disagreed with the database; the database was kept.");
+                    for (String line : differences) {
+                        out.line(line);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Adds a line for each way the ledger's state of the product differs
+    // from the loaded one. Returns whether there was any.
+    private static boolean compareWithLedger(Product p, LedgerProjection.ProductState state, List<String> out) {
+        int before = out.size();
+        String prefix = p.getId() + " (" + p.getName() + "): ";
+        if (state.getStockLevel() != p.getStockLevel()) {
+            out.add(prefix + "stock " + state.getStockLevel() + " in the ledger, " + p.getStockLevel() + " in the database");
+        }
+        if (state.getUnitPrice() != p.getUnitPrice()) {
+            out.add(prefix + "price " + state.getUnitPrice() + " in the ledger, " + p.getUnitPrice() + " in the database");
+        }
+        if (state.getReorderLevel() != p.getReorderLevel()) {
+            out.add(prefix + "reorder level " + state.getReorderLevel() + " in the ledger, "
+                    + p.getReorderLevel() + " in the database");
+        }
+        if (!Objects.equals(state.getExpiryDate(), p.getExpiryDate())) {
+            out.add(prefix + "expiry " + state.getExpiryDate() + " in the ledger, " + p.getExpiryDate() + " in the database");
+        }
+        if (!Objects.equals(state.getName(), p.getName()) || !Objects.equals(state.getCategory(), p.getCategory())) {
+            out.add(prefix + "name and category " + state.getName() + " / " + state.getCategory() + " in the ledger");
+        }
+        return out.size() > before;
+    }
+
+    public InventoryLedger getLedger() {
+        return ledger;
+    }
+
+    // Only queues the event; the ledger writes it, and feeds the stock
+    // history, on its own thread.
+    private void record(InventoryEvent event) {
+        if (ledger == null) return;
+        try {
+            ledger.append(event);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Waits for recorded events to reach the history before it is queried.
+    private void syncLedger() {
+        if (ledger == null) return;
+        try {
+            ledger.sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Stock at the end of 'date', from the ledger history.
+    public int getStockAt(String productId, LocalDate date) {
+        syncLedger();
+        return stockHistory.getStockAt(productId, endOfDay(date));
+    }
+
+    public Map<String, Integer> getAllStockAt(LocalDate date) {
+        syncLedger();
+        return stockHistory.getAllStockAt(endOfDay(date));
+    }
+
+    public double getInventoryValueAt(LocalDate date) {
+        syncLedger();
+        return stockHistory.getValueAt(endOfDay(date));
+    }
+
+    private static long endOfDay(LocalDate date) {
+        return date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1;
+    }
+
     // ---------- Products ----------
 
+    // Opening stock entered here has no purchase price, so it becomes a
+    // single lot of unknown cost.
     public Product addItem(String id, String name, String category, double unitPrice,
                            int stockLevel, LocalDate expiryDate, int reorderLevel) {
-        Product product = new Product(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel);
-        products.put(id, product);
+        Product product = registerProduct(newProduct(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel));
+        lots.get(product.getOrdinal()).add(stockLevel, LotQueue.UNKNOWN_COST, expiryDate);
+        record(InventoryEvent.itemAdded(product));
+        try {
+            DatabaseHelper.saveProduct(product);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        saveStockDetail(Collections.singletonList(product));
         return product;
     }
 
+    // Its lots are restored separately, by addLotsFromDatabase or
+    // rebuildLotsFromDatabase.
     public Product addItemFromDatabase(String id, String name, String category, double unitPrice,
                                        int stockLevel, LocalDate expiryDate, int reorderLevel) {
-        Product product = new Product(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel);
-        products.put(id, product);
+        return registerProduct(newProduct(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel));
+    }
+
+    // Restores a product's saved lots, oldest first. If the saved total and
+    // the stock disagree, because one was written and the other wasn't, the
+    // oldest units are dropped or the newest known cost covers the rest.
+    public void addLotsFromDatabase(String productId, List<LotQueue.Lot> saved) {
+        Product product = products.get(productId);
+        if (product == null) return;
+        LotQueue queue = new LotQueue();
+        for (LotQueue.Lot lot : saved) {
+            queue.add(lot.getQuantity(), lot.getUnitCost(), lot.getExpiryDate());
+        }
+        long difference = product.getStockLevel() - queue.getTotalQuantity();
+        if (difference < 0) {
+            queue.consume((int) -difference, product.getUnitPrice());
+        } else if (difference > 0) {
+            queue.add((int) difference, queue.getLastKnownCost(), product.getExpiryDate());
+        }
+        lots.put(product.getOrdinal(), queue);
+    }
+
+    // Builds the lots of a product that has none saved, such as one from a
+    // database older than saved lots. FIFO still holds the newest receipts,
+    // so 'receivedNewestFirst' is taken until it covers the stock. Stock
+    // older than every receipt is costed at the oldest receipt taken, or at
+    // 'quotedCost' (the product's latest order price) when nothing was
+    // received; only with neither is its cost unknown.
+    public void rebuildLotsFromDatabase(String productId, List<LotQueue.Lot> receivedNewestFirst,
+                                        double quotedCost) {
+        Product product = products.get(productId);
+        if (product == null) return;
+        int remaining = product.getStockLevel();
+        List<LotQueue.Lot> taken = new ArrayList<>();
+        for (LotQueue.Lot lot : receivedNewestFirst) {
+            if (remaining <= 0) break;
+            int qty = Math.min(remaining, lot.getQuantity());
+            taken.add(new LotQueue.Lot(qty, lot.getUnitCost(), product.getExpiryDate()));
+            remaining -= qty;
+        }
+        LotQueue queue = new LotQueue();
+        if (remaining > 0) {
+            double cost = taken.isEmpty() ? quotedCost : taken.get(taken.size() - 1).getUnitCost();
+            queue.add(remaining, cost, product.getExpiryDate());
+        }
+        for (int i = taken.size() - 1; i >= 0; i--) {
+            LotQueue.Lot lot = taken.get(i);
+            queue.add(lot.getQuantity(), lot.getUnitCost(), lot.getExpiryDate());
+        }
+        lots.put(product.getOrdinal(), queue);
+    }
+
+    private Product newProduct(String id, String name, String category, double unitPrice,
+                               int stockLevel, LocalDate expiryDate, int reorderLevel) {
+        category = categories.intern(category).getName();
+        if (expiryDate != null) {
+            return new PerishableProduct(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel);
+        }
+        return new Product(id, name, category, unitPrice, stockLevel, expiryDate, reorderLevel);
+    }
+
+    // Opening stock goes to the default location; its lots are left to the
+    // caller. Adding an existing id replaces its stock, so it is refused while
+    // units are held.
+    private Product registerProduct(Product product) {
+        int existing = products.ordinalOf(product.getId());
+        if (existing >= 0) {
+            locationStock.reset(existing);
+        }
+        products.put(product);
+        categories.put(product.getOrdinal(), categories.intern(product.getCategory()),
+                product.getStockLevel(), product.getUnitPrice());
+        updateRangeIndexes(product);
+        leaderboard.register(product.getOrdinal());
+        searchIndex.add(product);
+        updateLowStockIndex(product);
+        expiryIndex.put(product.getId(), product.getExpiryDate());
+        lots.put(product.getOrdinal(), new LotQueue());
+        if (product.getStockLevel() > 0) {
+            locationStock.adjust(DEFAULT_LOCATION, product.getOrdinal(), product.getStockLevel());
+        }
         return product;
     }
 
+    public void updateUnitPrice(String productId, double unitPrice) {
+        Product product = products.get(productId);
+        if (product == null) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        if (unitPrice < 0) {
+            throw new IllegalArgumentException("Price cannot be negative.");
+        }
+        synchronized (product) {
+            product.setUnitPrice(unitPrice);
+            categories.put(product.getOrdinal(), categories.intern(product.getCategory()),
+                    product.getStockLevel(), unitPrice);
+            updateRangeIndexes(product);
+        }
+        record(InventoryEvent.priceChanged(product));
+        try {
+            DatabaseHelper.updateProductPrice(productId, unitPrice);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Called with the product locked whenever its price or stock changes.
+    // Stock value is rounded from stock * price, not from the rounded price,
+    // so it stays within half a cent of the value the query tests.
+    private void updateRangeIndexes(Product product) {
+        priceIndex.put(product.getOrdinal(), Math.round(product.getUnitPrice() * 100));
+        stockIndex.put(product.getOrdinal(), product.getStockLevel());
+        stockValueIndex.put(product.getOrdinal(),
+                Math.round(product.getStockLevel() * product.getUnitPrice() * 100));
+    }
+
     public void updateStock(String productId, int deltaQuantity) {
+        updateStock(productId, DEFAULT_LOCATION, deltaQuantity);
+    }
+
+    public void updateStock(String productId, String locationId, int deltaQuantity) {
         Product product = products.get(productId);
         if (product == null) {
             throw new IllegalArgumentException("Product not found: " + productId);
         }
-        int newStock = product.getStockLevel() + deltaQuantity;
-        if (newStock < 0) {
-            throw new IllegalArgumentException("Insufficient stock for product: " + productId);
+        updateStock(product, locationId, deltaQuantity);
+    }
+
+    // Same as updateStock(String, int) for a caller that already holds the
+    // product's ordinal.
+    public void updateStock(int ordinal, int deltaQuantity) {
+        Product product = products.get(ordinal);
+        if (product == null) {
+            throw new IllegalArgumentException("Product not found: #" + ordinal);
+        }
+        updateStock(product, DEFAULT_LOCATION, deltaQuantity);
+    }
+
+    // A manual increase has no purchase price, so it is added as a lot of
+    // unknown cost.
+    private void updateStock(Product product, String locationId, int deltaQuantity) {
+        if (deltaQuantity >= 0) {
+            addStock(product, locationId, deltaQuantity, LotQueue.UNKNOWN_COST, product.getExpiryDate());
+        } else {
+            removeStock(product, locationId, -deltaQuantity);
+        }
+        record(InventoryEvent.stockAdjusted(product.getId(), locationId, deltaQuantity));
+        saveStockDeltas(Collections.singletonMap(product.getId(), deltaQuantity));
+        saveStockDetail(Collections.singletonList(product));
+    }
+
+    // Writes changes to products' total stock to Products.stock. Like sales,
+    // memory is updated first and a failed write is only logged. Sales and
+    // receipts write their deltas in their own transactions instead.
+    private void saveStockDeltas(Map<String, Integer> deltas) {
+        try {
+            DatabaseHelper.updateStock(deltas);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Replaces the saved lots and stock by location of each product with
+    // what it holds now, after its stock has been written. Saves are
+    // serialized so an older picture of a product can't overwrite a newer one.
+    private void saveStockDetail(Collection<Product> changed) {
+        synchronized (stockDetailLock) {
+            Map<String, List<LotQueue.Lot>> lotsByProduct = new LinkedHashMap<>();
+            Map<String, Map<String, Integer>> byLocation = new LinkedHashMap<>();
+            for (Product p : changed) {
+                lotsByProduct.put(p.getId(), lots.get(p.getOrdinal()).getLots());
+                byLocation.put(p.getId(), locationStock.getByLocation(p.getOrdinal()));
+            }
+            try {
+                DatabaseHelper.saveStockDetail(lotsByProduct, byLocation);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void addStock(Product product, String locationId, int quantity,
+                          double unitCost, LocalDate expiryDate) {
+        locationStock.adjust(locationId, product.getOrdinal(), quantity);
+        synchronized (product) {
+            product.setStockLevel(product.getStockLevel() + quantity);
+            categories.updateUnits(product.getOrdinal(), product.getStockLevel());
+            updateRangeIndexes(product);
+        }
+        lots.get(product.getOrdinal()).add(quantity, unitCost, expiryDate);
+        updateLowStockIndex(product);
+    }
+
+    // Takes stock out oldest lot first and returns the cost of what was removed.
+    private double removeStock(Product product, String locationId, int quantity) {
+        try {
+            locationStock.adjust(locationId, product.getOrdinal(), -quantity);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Insufficient stock for product: " + product.getId()
+                    + " at " + locationId);
+        }
+        return releaseStock(product, quantity);
+    }
+
+    // Bookkeeping once stock has left its location: product total, lots and
+    // the low-stock index. Returns the cost of the units removed.
+    private double releaseStock(Product product, int quantity) {
+        synchronized (product) {
+            product.setStockLevel(product.getStockLevel() - quantity);
+            categories.updateUnits(product.getOrdinal(), product.getStockLevel());
+            updateRangeIndexes(product);
+        }
+        double cost = lots.get(product.getOrdinal()).consume(quantity, product.getUnitPrice());
+        updateLowStockIndex(product);
+        return cost;
+    }
+
+    // ---------- Locations ----------
+
+    public void addLocation(String id, String name) {
+        locationStock.addLocation(new Location(id, name));
+    }
+
+    public List<Location> getLocations() {
+        return locationStock.getLocations();
+    }
+
+    public Map<String, Integer> getStockByLocation(String productId) {
+        int ordinal = products.ordinalOf(productId);
+        return ordinal >= 0 ? locationStock.getByLocation(ordinal) : new TreeMap<>();
+    }
+
+    public void transferStock(String productId, String fromLocationId, String toLocationId, int quantity) {
+        int ordinal = products.ordinalOf(productId);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        locationStock.transfer(ordinal, fromLocationId, toLocationId, quantity);
+        record(InventoryEvent.stockTransferred(productId, fromLocationId, toLocationId, quantity));
+        saveStockDetail(Collections.singletonList(products.get(ordinal)));
+    }
+
+    // Restores where a product's stock is held. Products.stock is the total
+    // that sales and receipts write in their own transactions, so if the two
+    // disagree the default location takes up the difference, then the other
+    // locations in id order. A location not set up in this run is added.
+    public void addStockByLocationFromDatabase(String productId, Map<String, Integer> saved) {
+        Product product = products.get(productId);
+        if (product == null) return;
+        Map<String, Integer> quantities = new TreeMap<>(saved);
+        int total = 0;
+        for (int qty : quantities.values()) total += qty;
+        int main = quantities.getOrDefault(DEFAULT_LOCATION, 0) + product.getStockLevel() - total;
+        quantities.put(DEFAULT_LOCATION, Math.max(0, main));
+        for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+            if (main >= 0) break;
+            int take = Math.min(-main, e.getValue());
+            e.setValue(e.getValue() - take);
+            main += take;
         }
-        product.setStockLevel(newStock);
+        locationStock.reset(product.getOrdinal());
+        for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+            if (e.getValue() <= 0) continue;
+            locationStock.addLocation(new Location(e.getKey(), e.getKey()));
+            locationStock.adjust(e.getKey(), product.getOrdinal(), e.getValue());
+        }
+    }
+
+    public LocationStock.Rollup getStockRollup() {
+        return locationStock.rollup();
+    }
+
+    public List<Product> getLowStockProductsAcrossLocations() {
+        Map<String, Integer> units = getStockRollup().getUnitsByProduct();
+        List<Product> result = new ArrayList<>();
+        for (Product p : products.values()) {
+            if (units.getOrDefault(p.getId(), 0) <= p.getReorderLevel()) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    // Lots of unknown cost are valued the way a sale would cost them.
+    public double getInventoryCostValue() {
+        double total = 0;
+        for (Product p : products.values()) {
+            total += lots.get(p.getOrdinal()).getTotalCost(p.getUnitPrice());
+        }
+        return total;
+    }
+
+    // Only writes when the product crosses its reorder level. Every change to
+    // a low-stock product also queues it for the reorder planner.
+    private void updateLowStockIndex(Product product) {
+        synchronized (product) {
+            Product indexed = lowStock.get(product.getOrdinal());
+            if (product.isLowStock()) {
+                if (indexed != product) lowStock.put(product.getOrdinal(), product);
+                queueForReorder(product);
+            } else if (indexed != null) {
+                lowStock.put(product.getOrdinal(), null);
+            }
+        }
+    }
+
+    public Product getProductById(String id) {
+        return products.get(id);
+    }
+
+    public Product getProductByOrdinal(int ordinal) {
+        return products.get(ordinal);
+    }
+
+    // Dense handle for a product, or -1; stable for the life of the service.
+    public int getProductOrdinal(String id) {
+        return products.ordinalOf(id);
     }
 
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products.values());
+        return products.values();
     }
 
     public List<Product> searchItems(String keyword) {
-        String lower = keyword.toLowerCase();
-        return products.values().stream()
-                .filter(p -> p.getId().toLowerCase().contains(lower)
-                        || p.getName().toLowerCase().contains(lower)
-                        || p.getCategory().toLowerCase().contains(lower))
-                .collect(Collectors.toList());
+        List<Product> result = new ArrayList<>();
+        for (String id : searchIndex.search(keyword)) {
+            Product p = products.get(id);
+            if (p != null) result.add(p);
+        }
+        return result;
+    }
+
+    // ---------- Categories ----------
+
+    public List<Category> getCategories() {
+        return categories.getCategories();
+    }
+
+    public List<Product> getProductsInCategories(Collection<String> categoryNames) {
+        BitSet ordinals = categories.membersOf(categoryNames);
+        List<Product> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            result.add(products.get(i));
+        }
+        return result;
+    }
+
+    public Map<Category, CategoryIndex.Totals> getCategoryTotals() {
+        return categories.getAllTotals();
+    }
+
+    public List<Product> queryProducts(ProductQuery query) {
+        return queryEngine.execute(query);
+    }
+
+    public String explainQuery(ProductQuery query) {
+        return queryEngine.explain(query);
     }
 
     public List<Product> getLowStockProducts() {
-        return products.values().stream()
-                .filter(Product::isLowStock)
-                .collect(Collectors.toList());
+        List<Product> result = new ArrayList<>();
+        lowStock.forEach((p, ordinal) -> result.add(p));
+        return result;
+    }
+
+    // A snapshot; later stock changes don't affect it.
+    public Set<String> getLowStockProductIds() {
+        Set<String> ids = new HashSet<>();
+        lowStock.forEach((p, ordinal) -> ids.add(p.getId()));
+        return Collections.unmodifiableSet(ids);
+    }
+
+    // ---------- Expiry ----------
+
+    public List<Product> getExpiringProducts(int withinDays) {
+        LocalDate today = LocalDate.now();
+        List<Product> result = new ArrayList<>();
+        for (String id : expiryIndex.expiringBetween(today, today.plusDays(withinDays))) {
+            Product p = products.get(id);
+            if (p != null) result.add(p);
+        }
+        return result;
+    }
+
+    // Zeroes the stock of everything whose expiry date is before 'today' and
+    // records the write-off as a report. Only expired products are visited.
+    public Report writeOffExpired(LocalDate today) {
+        List<String> expired = expiryIndex.expiringOnOrBefore(today.minusDays(1));
+        if (expired.isEmpty()) return null;
+
+        List<Product> writtenOff = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (String id : expired) {
+            Product p = products.get(id);
+            if (p == null || p.getStockLevel() == 0) {
+                expiryIndex.remove(id);
+                continue;
+            }
+            // Units under a hold stay until the hold ends; a later sweep takes them.
+            int qty = 0;
+            for (String locationId : locationStock.getByLocation(p.getOrdinal()).keySet()) {
+                int available = locationStock.getAvailable(locationId, p.getOrdinal());
+                if (available > 0) {
+                    removeStock(p, locationId, available);
+                    record(InventoryEvent.stockAdjusted(id, locationId, -available));
+                    qty += available;
+                }
+            }
+            if (p.getStockLevel() == 0) {
+                expiryIndex.remove(id);
+            }
+            if (qty == 0) continue;
+            writtenOff.add(p);
+            quantities.add(qty);
+            deltas.put(id, -qty);
+        }
+        if (!deltas.isEmpty()) {
+            saveStockDeltas(deltas);
+            saveStockDetail(writtenOff);
+        }
+        return writeReport(ReportType.EXPIRY_WRITE_OFF, out -> {
+            out.text("EXPIRY WRITE-OFF ").text(today.toString()).newLine();
+            out.line("=========================");
+            for (int i = 0; i < writtenOff.size(); i++) {
+                Product p = writtenOff.get(i);
+                out.text(p.getName()).text(" (").text(p.getId()).text("): ").number(quantities.get(i))
+                        .text(" units written off (expired ").text(String.valueOf(p.getExpiryDate())).text(')').newLine();
+            }
+        });
     }
 
     // ---------- Suppliers ----------
@@ -93,7 +693,9 @@ public class InventoryService {
     }
 
     public List<Supplier> getAllSuppliers() {
-        return new ArrayList<>(suppliers.values());
+        List<Supplier> list = suppliers.values();
+        list.sort(Comparator.comparingInt(Supplier::getId));
+        return list;
     }
 
     public Supplier getSupplierById(int id) {
@@ -121,94 +723,648 @@ public class InventoryService {
 
     // ---------- Purchase Orders ----------
 
+    // The order is saved straight away, so it survives a restart before it
+    // is received.
     public PurchaseOrder createPurchaseOrder(int supplierId) {
+        PurchaseOrder po = newPurchaseOrder(supplierId);
+        savePurchaseOrders(Collections.singletonList(po));
+        return po;
+    }
+
+    private PurchaseOrder newPurchaseOrder(int supplierId) {
         Supplier supplier = suppliers.get(supplierId);
         if (supplier == null) {
             throw new IllegalArgumentException("Supplier not found: " + supplierId);
         }
-        PurchaseOrder po = new PurchaseOrder(nextOrderId++, supplier, defaultManager);
-        purchaseOrders.add(po);
+        PurchaseOrder po;
+        synchronized (listLock) {
+            po = new PurchaseOrder(nextOrderId++, supplier, defaultManager);
+            purchaseOrders = purchaseOrders.append(po);
+            purchaseOrdersById.put(po.getId(), po);
+        }
+        purchaseOrderStats.register(po);
+        record(InventoryEvent.purchaseOrderCreated(po));
         return po;
     }
 
-    public PurchaseOrder addPurchaseOrderFromDatabase(int id, int supplierId,
-                                                      LocalDate createdDate, String statusStr) {
+    // Like other writes, memory comes first and a failed save is only logged;
+    // receiving the order saves whatever is still missing.
+    private void savePurchaseOrders(List<PurchaseOrder> orders) {
+        try {
+            DatabaseHelper.savePurchaseOrders(orders);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public PurchaseOrder addPurchaseOrderFromDatabase(int id, int supplierId, LocalDate createdDate,
+                                                      String statusStr, long totalCents,
+                                                      long totalUnits, int lineCount) {
         Supplier supplier = suppliers.get(supplierId);
         if (supplier == null) {
             return null;
         }
         PurchaseOrder po = new PurchaseOrder(id, supplier, defaultManager);
         po.setCreatedDate(createdDate);
+        po.loadAsHeader(totalCents, totalUnits, lineCount);
         try {
             po.setStatus(OrderStatus.valueOf(statusStr.toUpperCase()));
         } catch (Exception e) {
             po.setStatus(OrderStatus.CREATED);
         }
-        purchaseOrders.add(po);
-        nextOrderId = Math.max(nextOrderId, id + 1);
+        synchronized (listLock) {
+            purchaseOrders = purchaseOrders.append(po);
+            purchaseOrdersById.put(po.getId(), po);
+            nextOrderId = Math.max(nextOrderId, id + 1);
+        }
+        purchaseOrderStats.register(po);
         return po;
     }
 
-    public void addOrderItemFromDatabase(int poId, String productId,
-                                         int quantity, double unitPrice) {
+    public List<OrderItem> getOrderItems(int poId) {
         PurchaseOrder po = findPurchaseOrderById(poId);
-        Product product = products.get(productId);
-        if (po == null || product == null) {
-            return;
+        if (po == null) {
+            throw new IllegalArgumentException("Purchase order not found: " + poId);
+        }
+        if (!po.isItemsLoaded()) {
+            try {
+                po.setItems(DatabaseHelper.loadOrderItems(poId, products::get));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return new ArrayList<>();
+            }
+            loadedOrderItems.put(poId, po);
+        } else {
+            loadedOrderItems.get(poId); // refresh LRU position
+        }
+        return po.getItems();
+    }
+
+    // ---------- Receiving ----------
+
+    public GoodsReceipt receivePurchaseOrders(Collection<Integer> poIds) {
+        GoodsReceipt receipt = new GoodsReceipt();
+        for (int poId : new LinkedHashSet<>(poIds)) {
+            PurchaseOrder po = findReceivablePurchaseOrder(poId);
+            for (OrderItem item : getOrderItems(poId)) {
+                if (item.getOutstandingQuantity() > 0) {
+                    receipt.addLine(po, item, item.getOutstandingQuantity());
+                }
+            }
+            receipt.setStatus(po, OrderStatus.RECEIVED);
         }
-        OrderItem item = new OrderItem(product, quantity, unitPrice);
-        po.addItem(item);
+        applyGoodsReceipt(receipt);
+        return receipt;
+    }
+
+    public GoodsReceipt receivePurchaseOrder(int poId, Map<String, Integer> quantitiesByProduct) {
+        PurchaseOrder po = findReceivablePurchaseOrder(poId);
+        List<OrderItem> items = getOrderItems(poId);
+        GoodsReceipt receipt = new GoodsReceipt();
+
+        for (Map.Entry<String, Integer> e : quantitiesByProduct.entrySet()) {
+            int remaining = e.getValue();
+            if (remaining <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for " + e.getKey());
+            }
+            for (OrderItem item : items) {
+                if (remaining == 0) break;
+                if (!item.getProduct().getId().equals(e.getKey())) continue;
+                int qty = Math.min(remaining, item.getOutstandingQuantity());
+                if (qty > 0) {
+                    receipt.addLine(po, item, qty);
+                    remaining -= qty;
+                }
+            }
+            if (remaining > 0) {
+                throw new IllegalArgumentException("PO #" + poId + " has only "
+                        + (e.getValue() - remaining) + " outstanding of " + e.getKey());
+            }
+        }
+
+        boolean complete = true;
+        for (OrderItem item : items) {
+            int receiving = receipt.getLineQuantities().getOrDefault(item, 0);
+            if (item.getOutstandingQuantity() > receiving) {
+                complete = false;
+                break;
+            }
+        }
+        receipt.setStatus(po, complete ? OrderStatus.RECEIVED : OrderStatus.PARTIALLY_RECEIVED);
+        applyGoodsReceipt(receipt);
+        return receipt;
+    }
+
+    private PurchaseOrder findReceivablePurchaseOrder(int poId) {
+        PurchaseOrder po = findPurchaseOrderById(poId);
+        if (po == null) {
+            throw new IllegalArgumentException("Purchase order not found: " + poId);
+        }
+        if (po.getStatus() == OrderStatus.RECEIVED) {
+            throw new IllegalStateException("PO #" + poId + " has already been received.");
+        }
+        return po;
+    }
+
+    // The database is written first so a failed batch leaves memory untouched.
+    private void applyGoodsReceipt(GoodsReceipt receipt) {
+        try {
+            DatabaseHelper.saveGoodsReceipt(receipt);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to save receipt: " + e.getMessage(), e);
+        }
+        Set<Product> received = new LinkedHashSet<>();
+        for (Map.Entry<OrderItem, Integer> e : receipt.getLineQuantities().entrySet()) {
+            OrderItem item = e.getKey();
+            item.receive(e.getValue());
+            Product product = products.get(item.getProduct().getId());
+            if (product != null) {
+                addStock(product, DEFAULT_LOCATION, e.getValue(), item.getUnitPrice(), product.getExpiryDate());
+                record(InventoryEvent.stockReceived(receipt.getPurchaseOrder(item), item, e.getValue()));
+                received.add(product);
+            }
+        }
+        saveStockDetail(received);
+        for (Map.Entry<String, Integer> e : receipt.getStockDeltas().entrySet()) {
+            quantityOnOrder.computeIfPresent(e.getKey(), (k, v) -> v > e.getValue() ? v - e.getValue() : null);
+        }
+        for (Map.Entry<PurchaseOrder, OrderStatus> e : receipt.getStatusChanges().entrySet()) {
+            e.getKey().setStatus(e.getValue());
+            record(InventoryEvent.purchaseOrderStatusChanged(e.getKey(), e.getValue()));
+        }
+    }
+
+    public PurchaseOrder getPurchaseOrderById(int id) {
+        return findPurchaseOrderById(id);
     }
 
     private PurchaseOrder findPurchaseOrderById(int id) {
-        for (PurchaseOrder po : purchaseOrders) {
-            if (po.getId() == id) return po;
+        synchronized (listLock) {
+            return purchaseOrdersById.get(id);
         }
-        return null;
     }
 
+    // A read-only view of the current version, which later orders don't
+    // change. Copy it to sort or edit it.
     public List<PurchaseOrder> getAllPurchaseOrders() {
-        return new ArrayList<>(purchaseOrders);
+        return Collections.unmodifiableList(purchaseOrders);
+    }
+
+    public Map<Integer, PurchaseOrderStats.Totals> getPurchaseOrderSpendBySupplier() {
+        return purchaseOrderStats.getBySupplier();
+    }
+
+    public Map<OrderStatus, PurchaseOrderStats.Totals> getPurchaseOrderSpendByStatus() {
+        return purchaseOrderStats.getByStatus();
+    }
+
+    public Map<YearMonth, PurchaseOrderStats.Totals> getPurchaseOrderSpendByMonth() {
+        return purchaseOrderStats.getByMonth();
+    }
+
+    // ---------- Reordering ----------
+
+    public void addPreferredSupplierFromDatabase(String productId, int supplierId) {
+        preferredSuppliers.put(productId, supplierId);
+        Product product = products.get(productId);
+        if (product != null) {
+            updateLowStockIndex(product);
+        }
+    }
+
+    private void queueForReorder(Product product) {
+        if (reorderPending.get(product.getOrdinal()) == product) return;
+        reorderPending.put(product.getOrdinal(), product);
+        reorderQueue.add(product);
+    }
+
+    // Next queued low-stock product for the reorder planner, or null. Taking
+    // it clears its mark first, so a change after this queues it again.
+    Product pollReorderCandidate() {
+        Product product = reorderQueue.poll();
+        if (product != null) {
+            reorderPending.put(product.getOrdinal(), null);
+        }
+        return product;
+    }
+
+    public Integer getPreferredSupplierId(String productId) {
+        return preferredSuppliers.get(productId);
+    }
+
+    public void addQuantityOnOrderFromDatabase(String productId, int quantity) {
+        quantityOnOrder.merge(productId, quantity, Integer::sum);
+    }
+
+    public int getQuantityOnOrder(String productId) {
+        return quantityOnOrder.getOrDefault(productId, 0);
+    }
+
+    public DemandForecaster getDemandForecaster() {
+        return demandForecaster;
+    }
+
+    // Applies a ReorderPlanner plan. Quantities are re-checked against what is on
+    // order now, in case an earlier plan was applied in the meantime. The
+    // drafts are saved with their lines, since the quantities they put on
+    // order are counted again from the database after a restart.
+    public List<PurchaseOrder> createReorderDrafts(Map<Integer, Map<String, Integer>> plan) {
+        List<PurchaseOrder> drafts = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (Map.Entry<Integer, Map<String, Integer>> e : plan.entrySet()) {
+            if (!suppliers.containsKey(e.getKey())) continue;
+            PurchaseOrder po = null;
+            for (Map.Entry<String, Integer> line : e.getValue().entrySet()) {
+                Product p = products.get(line.getKey());
+                if (p == null) continue;
+                int qty = Math.min(line.getValue(), ReorderPlanner.orderQuantity(p,
+                        demandForecaster.dailyDemand(p.getOrdinal(), today), getQuantityOnOrder(p.getId())));
+                if (qty <= 0) continue;
+                if (po == null) {
+                    po = newPurchaseOrder(e.getKey());
+                    drafts.add(po);
+                }
+                OrderItem item = new OrderItem(p, qty, p.getUnitPrice());
+                po.addItem(item);
+                record(InventoryEvent.purchaseOrderLineAdded(po, item));
+                quantityOnOrder.merge(p.getId(), qty, Integer::sum);
+            }
+        }
+        if (!drafts.isEmpty()) {
+            savePurchaseOrders(drafts);
+        }
+        return drafts;
     }
 
     // ---------- Sales / Revenue / Profit ----------
 
     public void recordSale(String productId, int quantity, double salePrice, Account seller) {
-        Product product = products.get(productId);
+        recordSales(Collections.singletonList(new BasketLine(productId, quantity, salePrice)), seller);
+    }
+
+    // Same as recordSale(String, ...) for a caller that already holds the
+    // product's ordinal. From here on the sale never looks the product up by
+    // id: stock counters, lots, the low-stock index and the forecaster are
+    // all indexed by ordinal.
+    public Sale recordSale(int ordinal, int quantity, double salePrice, Account seller) {
+        Product product = products.get(ordinal);
         if (product == null) {
-            throw new IllegalArgumentException("Product not found: " + productId);
+            throw new IllegalArgumentException("Product not found: #" + ordinal);
         }
-        if (quantity <= 0) {
-            throw new IllegalArgumentException("Quantity must be positive");
+        return sellBasket(Collections.singletonList(new BasketLine(product.getId(), quantity, salePrice)),
+                new Product[]{product}, seller).get(0);
+    }
+
+    // Checks every line first, then takes the whole basket out of stock in one
+    // step and saves it with one batched insert, so a basket either sells
+    // completely or not at all.
+    public List<Sale> recordSales(List<BasketLine> lines, Account seller) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("Basket is empty");
+        }
+        Product[] resolved = new Product[lines.size()];
+        for (int i = 0; i < resolved.length; i++) {
+            String productId = lines.get(i).getProductId();
+            resolved[i] = products.get(productId);
+            if (resolved[i] == null) {
+                throw new IllegalArgumentException("Product not found: " + productId);
+            }
         }
+        return sellBasket(lines, resolved, seller);
+    }
 
-        double costPrice = product.getUnitPrice();
-        updateStock(productId, -quantity);
+    // 'resolved' holds the product of each line, looked up once by the caller.
+    private List<Sale> sellBasket(List<BasketLine> lines, Product[] resolved, Account seller) {
+        int[] ordinals = new int[resolved.length];
+        int[] quantities = new int[resolved.length];
+        for (int i = 0; i < resolved.length; i++) {
+            quantities[i] = lines.get(i).getQuantity();
+            if (quantities[i] <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            ordinals[i] = resolved[i].getOrdinal();
+        }
 
-        Sale sale = new Sale(0, product, quantity, salePrice, costPrice, LocalDate.now(), seller);
-        sales.add(sale);
-        totalRevenue += sale.getRevenue();
-        totalProfit += sale.getProfit();
+        // Sells from the store first; stock moved to another location is
+        // still sold once the store runs out.
+        locationStock.takeAll(DEFAULT_LOCATION, ordinals, quantities);
+        return completeSales(lines, resolved, seller);
+    }
+
+    // Books sales whose stock has already left its location.
+    private List<Sale> completeSales(List<BasketLine> lines, Product[] resolved, Account seller) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        int sellerId = sellerId(seller);
+        List<Sale> batch = new ArrayList<>(lines.size());
+        for (int i = 0; i < resolved.length; i++) {
+            BasketLine line = lines.get(i);
+            Product product = resolved[i];
+            double costPrice = releaseStock(product, line.getQuantity()) / line.getQuantity();
+            Sale sale = new Sale(0, product, line.getQuantity(), line.getSalePrice(), costPrice, today, seller);
+            batch.add(sale);
+            demandForecaster.observe(product.getOrdinal(), sale.getQuantity(), today);
+            leaderboard.record(product.getOrdinal(), today.toEpochDay(), sale.getQuantity());
+            salesRollups.add(now, product.getOrdinal(), sellerId, categoryCode(product),
+                    sale.getQuantity(), sale.getRevenue(), sale.getProfit());
+            record(InventoryEvent.sale(sale));
+        }
+        sales.addAll(batch);
 
         try {
-            DatabaseHelper.insertSale(productId, quantity, salePrice, costPrice, sale.getDate());
+            DatabaseHelper.insertSales(batch, now);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        saveStockDetail(new LinkedHashSet<>(Arrays.asList(resolved)));
+        return batch;
+    }
+
+    // ---------- Reservations ----------
+
+    // Holds stock at the default location for ttlMillis. Returns a handle, or
+    // -1 if not enough unreserved stock is available.
+    public long reserveStock(String productId, int quantity, long ttlMillis) {
+        int ordinal = products.ordinalOf(productId);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        return reservations.reserve(DEFAULT_LOCATION, ordinal, quantity, ttlMillis);
+    }
+
+    public boolean cancelReservation(long handle) {
+        return reservations.cancel(handle);
+    }
+
+    // Turns a hold into a sale of the held quantity.
+    public Sale confirmReservation(long handle, double salePrice, Account seller) {
+        int slot = reservations.claim(handle);
+        if (slot < 0) {
+            throw new IllegalStateException("Reservation has expired or was already used.");
+        }
+        Product product = products.get(reservations.claimedOrdinal(slot));
+        int quantity = reservations.claimedQuantity(slot);
+        try {
+            locationStock.consumeReserved(reservations.claimedLocation(slot), product.getOrdinal(), quantity);
+        } finally {
+            reservations.finishClaim(slot);
+        }
+        return completeSales(Collections.singletonList(new BasketLine(product.getId(), quantity, salePrice)),
+                new Product[]{product}, seller).get(0);
+    }
+
+    public int getAvailableStock(String productId) {
+        int ordinal = products.ordinalOf(productId);
+        return ordinal >= 0 ? locationStock.getAvailable(DEFAULT_LOCATION, ordinal) : 0;
+    }
+
+    public StockReservations getReservations() {
+        return reservations;
     }
 
     public void addSaleFromDatabase(int id, String productId, int quantity,
                                     double salePrice, double costPrice, LocalDate date) {
         Product product = products.get(productId);
         if (product == null) return;
-        Sale sale = new Sale(id, product, quantity, salePrice, costPrice, date, null);
-        sales.add(sale);
-        totalRevenue += sale.getRevenue();
-        totalProfit += sale.getProfit();
+        demandForecaster.observe(product.getOrdinal(), quantity, date);
+        leaderboard.record(product.getOrdinal(), date.toEpochDay(), quantity);
+        LocalDate cutoff = getSalesRetentionCutoff(LocalDate.now());
+        if (cutoff != null && date.isBefore(cutoff)) return; // due for the archive
+        sales.add(new Sale(id, product, quantity, salePrice, costPrice, date, null));
+    }
+
+    // ---------- Sales retention ----------
+
+    // With an archive attached, only sales from the last salesRetentionDays
+    // are held as detail; older ones live in the archive and the rollups.
+    public void attachSalesArchive(SalesArchive archive) {
+        this.salesArchive = archive;
     }
 
-    public double getTotalRevenue() { return totalRevenue; }
-    public double getTotalProfit() { return totalProfit; }
+    public SalesArchive getSalesArchive() {
+        return salesArchive;
+    }
+
+    public int getSalesRetentionDays() {
+        return salesRetentionDays;
+    }
+
+    public void setSalesRetentionDays(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("Retention must be at least one day.");
+        }
+        this.salesRetentionDays = days;
+    }
+
+    // First day kept as detail, or null when nothing is archived.
+    public LocalDate getSalesRetentionCutoff(LocalDate today) {
+        return salesArchive != null ? today.minusDays(salesRetentionDays - 1) : null;
+    }
+
+    // Drops detail and hour rollups older than the retention window once the
+    // database rows have been archived.
+    public void compactSales(LocalDate today) {
+        LocalDate cutoff = getSalesRetentionCutoff(today);
+        if (cutoff == null) return;
+        sales.removeIf(sale -> sale.getDate().isBefore(cutoff));
+        salesRollups.removeBefore(SalesRollups.Granularity.HOUR,
+                SalesRollups.bucketOf(SalesRollups.Granularity.HOUR, cutoff.atStartOfDay()));
+    }
+
+    // Sales dated from..to inclusive: archived ones first, read from disk on
+    // demand, then the retained detail.
+    public void scanSales(LocalDate from, LocalDate to, Consumer<Sale> consumer) throws IOException {
+        LocalDate cutoff = getSalesRetentionCutoff(LocalDate.now());
+        if (salesArchive != null && from.isBefore(cutoff)) {
+            salesArchive.scan(from, to, row -> {
+                Product p = products.get(row.getProductId());
+                if (p != null) {
+                    consumer.accept(new Sale(row.getId(), p, row.getQuantity(),
+                            row.getSalePrice(), row.getCostPrice(), row.getDate(), null));
+                }
+            });
+        }
+        for (Sale sale : new ArrayList<>(sales)) {
+            if (!sale.getDate().isBefore(from) && !sale.getDate().isAfter(to)) consumer.accept(sale);
+        }
+    }
+
+    public List<Sale> getSales(LocalDate from, LocalDate to) throws IOException {
+        List<Sale> result = new ArrayList<>();
+        scanSales(from, to, result::add);
+        return result;
+    }
+
+    private int sellerId(Account seller) {
+        if (seller == null) return 0;
+        synchronized (sellers) {
+            sellers.put(seller.getId(), seller);
+        }
+        return seller.getId();
+    }
+
+    private int categoryCode(Product product) {
+        return categories.intern(product.getCategory()).getCode();
+    }
+
+    // ---------- Sales rollups ----------
+
+    public SalesRollups getSalesRollups() {
+        return salesRollups;
+    }
+
+    // Loads one persisted rollup row; rows for unknown products are dropped.
+    public void addSalesRollupFromDatabase(SalesRollups.Granularity granularity, long bucket,
+                                           String productId, int sellerId, String category,
+                                           long saleCount, long units, double revenue, double profit) {
+        int ordinal = products.ordinalOf(productId);
+        if (ordinal < 0) return;
+        salesRollups.add(granularity, bucket, ordinal, sellerId, categories.intern(category).getCode(),
+                saleCount, units, revenue, profit);
+    }
+
+    // Rebuilds the rollups from the archive files and the retained sales,
+    // one partial rollup per worker thread, merged at the end. Restored sales
+    // carry only a date, so history before this runs has day and month
+    // buckets but no hours.
+    public void rebuildSalesRollups() {
+        Map<Product, Integer> codes = new HashMap<>();
+        for (Product p : products.values()) {
+            codes.put(p, categoryCode(p));
+        }
+        SalesRollups rebuilt = sales.parallelStream().collect(SalesRollups::new, (r, sale) -> {
+            Product p = sale.getProduct();
+            Integer code = codes.get(p);
+            r.add(sale.getDate(), p.getOrdinal(), sale.getSoldBy() != null ? sale.getSoldBy().getId() : 0,
+                    code != null ? code : categoryCode(p), sale.getQuantity(), sale.getRevenue(), sale.getProfit());
+        }, SalesRollups::addAll);
+
+        if (salesArchive != null) {
+            try {
+                rebuilt.addAll(salesArchive.files().parallelStream().collect(SalesRollups::new, (r, file) -> {
+                    // Every block of a file shares its product dictionary, so
+                    // it is resolved on the first block and reused after that.
+                    String[][] dictionary = new String[1][];
+                    Product[][] resolved = new Product[1][];
+                    try {
+                        SalesArchive.read(file, block -> {
+                            if (block.getProducts() != dictionary[0]) {
+                                String[] ids = block.getProducts();
+                                Product[] byCode = new Product[ids.length];
+                                for (int i = 0; i < ids.length; i++) byCode[i] = products.get(ids[i]);
+                                dictionary[0] = ids;
+                                resolved[0] = byCode;
+                            }
+                            for (int i = 0; i < block.size(); i++) {
+                                Product p = resolved[0][block.getProductCode(i)];
+                                if (p == null) continue;
+                                Integer code = codes.get(p);
+                                int qty = block.getQuantity(i);
+                                r.add(LocalDate.ofEpochDay(block.getEpochDay(i)), p.getOrdinal(), 0,
+                                        code != null ? code : categoryCode(p), qty,
+                                        block.getSalePrice(i) * qty,
+                                        (block.getSalePrice(i) - block.getCostPrice(i)) * qty);
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, SalesRollups::addAll));
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+            }
+        }
+        salesRollups.clear();
+        salesRollups.addAll(rebuilt);
+    }
+
+    public String getCategoryName(int code) {
+        Category c = categories.get(code);
+        return c != null ? c.getName() : "";
+    }
+
+    // Bucket totals for [from, to) at the given granularity.
+    public SortedMap<LocalDateTime, SalesTotals> getSalesByPeriod(SalesRollups.Granularity granularity,
+                                                                 LocalDateTime from, LocalDateTime to) {
+        return salesRollups.totalsByBucket(granularity, from, to);
+    }
+
+    public SalesTotals getSalesTotals(LocalDate from, LocalDate to) {
+        return salesRollups.totals(from, to);
+    }
+
+    public Map<Product, SalesTotals> getSalesByProduct(LocalDate from, LocalDate to) {
+        Map<Product, SalesTotals> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SalesTotals> e
+                : salesRollups.totalsBy(SalesRollups.Dimension.PRODUCT, from, to).entrySet()) {
+            Product p = products.get(e.getKey());
+            if (p != null) result.put(p, e.getValue());
+        }
+        return result;
+    }
+
+    public Map<Category, SalesTotals> getSalesByCategory(LocalDate from, LocalDate to) {
+        Map<Category, SalesTotals> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SalesTotals> e
+                : salesRollups.totalsBy(SalesRollups.Dimension.CATEGORY, from, to).entrySet()) {
+            Category c = categories.get(e.getKey());
+            if (c != null) result.put(c, e.getValue());
+        }
+        return result;
+    }
+
+    public Map<String, DemandForecast> getDemandForecasts(int horizonDays) {
+        return demandForecaster.forecastAll(products.values(), LocalDate.now(), horizonDays);
+    }
+
+    // ---------- Best sellers ----------
+
+    public List<ProductSalesCount> getTopSellersToday(int n) {
+        return ranked(leaderboard.today(LocalDate.now().toEpochDay()), n, true, false);
+    }
+
+    public List<ProductSalesCount> getTopSellersThisWeek(int n) {
+        return ranked(leaderboard.week(LocalDate.now().toEpochDay()), n, true, false);
+    }
+
+    // In-stock products that sold least over the last week, unsold ones first.
+    public List<ProductSalesCount> getSlowMovers(int n) {
+        return ranked(leaderboard.week(LocalDate.now().toEpochDay()), n, false, true);
+    }
+
+    // Approximate all-time leaders from a fixed-size sketch; each count may
+    // overstate the true one by at most SpaceSavingSketch.Counter.getError.
+    public List<ProductSalesCount> getHeavyHitters(int n) {
+        List<ProductSalesCount> result = new ArrayList<>();
+        for (SpaceSavingSketch.Counter c : leaderboard.sketch().top(n)) {
+            Product p = products.get(c.getOrdinal());
+            if (p != null) result.add(new ProductSalesCount(p, c.getCount()));
+        }
+        return result;
+    }
+
+    private List<ProductSalesCount> ranked(SalesLeaderboard.RollingWindow window, int n,
+                                           boolean highest, boolean inStockOnly) {
+        List<ProductSalesCount> result = new ArrayList<>();
+        if (n <= 0) return result;
+        IntPredicate collect = ordinal -> {
+            Product p = products.get(ordinal);
+            if (p == null || (inStockOnly && p.getStockLevel() <= 0)) return true;
+            long units = window.unitsOf(ordinal);
+            if (highest && units <= 0) return false;
+            result.add(new ProductSalesCount(p, units));
+            return result.size() < n;
+        };
+        if (highest) {
+            window.highest(collect);
+        } else {
+            window.lowest(collect);
+        }
+        return result;
+    }
+
+    public double getTotalRevenue() { return salesRollups.total().getRevenue(); }
+    public double getTotalProfit() { return salesRollups.total().getProfit(); }
 
     // ---------- Stock Requests ----------
 
@@ -228,20 +1384,24 @@ public class InventoryService {
         double expectedRevenue = salePrice * quantity;
         double expectedProfit = (salePrice - costPrice) * quantity;
 
-        StockRequest req = new StockRequest(
-                nextStockRequestId++,
-                product,
-                quantity,
-                costPrice,
-                salePrice,
-                expectedRevenue,
-                expectedProfit,
-                requester,
-                "PENDING",
-                LocalDateTime.now()
-        );
-
-        stockRequests.add(req);
+        StockRequest req;
+        synchronized (listLock) {
+            req = new StockRequest(
+                    nextStockRequestId++,
+                    product,
+                    quantity,
+                    costPrice,
+                    salePrice,
+                    expectedRevenue,
+                    expectedProfit,
+                    requester,
+                    "PENDING",
+                    LocalDateTime.now()
+            );
+            stockRequests = stockRequests.append(req);
+            stockRequestsById.put(req.getId(), req);
+        }
+        record(InventoryEvent.requestCreated(req));
         return req;
     }
 
@@ -256,8 +1416,9 @@ public class InventoryService {
         return list;
     }
 
+    // A read-only view of the current version; copy it to sort or edit it.
     public List<StockRequest> getAllStockRequests() {
-        return new ArrayList<>(stockRequests);
+        return Collections.unmodifiableList(stockRequests);
     }
 
     public void approveStockRequest(int requestId, Account manager) {
@@ -269,8 +1430,15 @@ public class InventoryService {
             throw new IllegalStateException("Only pending requests can be approved.");
         }
 
+        Product product = products.get(req.getProduct().getId());
+        if (product == null) {
+            throw new IllegalArgumentException("Product not found: " + req.getProduct().getId());
+        }
         req.approve(manager);
-        updateStock(req.getProduct().getId(), req.getQuantity());
+        addStock(product, DEFAULT_LOCATION, req.getQuantity(), req.getCostPrice(), product.getExpiryDate());
+        record(InventoryEvent.requestApproved(req));
+        saveStockDeltas(Collections.singletonMap(product.getId(), req.getQuantity()));
+        saveStockDetail(Collections.singletonList(product));
     }
 
     public void rejectStockRequest(int requestId, Account manager) {
@@ -283,67 +1451,235 @@ public class InventoryService {
         }
 
         req.reject(manager);
+        record(InventoryEvent.requestRejected(req));
     }
 
     private StockRequest findStockRequestById(int id) {
-        for (StockRequest r : stockRequests) {
-            if (r.getId() == id) return r;
+        synchronized (listLock) {
+            return stockRequestsById.get(id);
         }
-        return null;
     }
 
     // ---------- Employee performance stats ----------
 
     public List<EmployeeStats> getEmployeeStats() {
-        Map<Integer, EmployeeStats> map = new HashMap<>();
-
-        for (Sale sale : sales) {
-            Account seller = sale.getSoldBy();
+        List<EmployeeStats> result = new ArrayList<>();
+        Map<Integer, SalesTotals> bySeller =
+                salesRollups.totalsBy(SalesRollups.Dimension.SELLER);
+        for (Map.Entry<Integer, SalesTotals> e : bySeller.entrySet()) {
+            Account seller;
+            synchronized (sellers) {
+                seller = sellers.get(e.getKey());
+            }
             if (seller == null) continue;
             if (seller.getRole() != UserRole.EMPLOYEE) continue;
 
-            EmployeeStats stats = map.get(seller.getId());
-            if (stats == null) {
-                stats = new EmployeeStats(seller);
-                map.put(seller.getId(), stats);
-            }
-            stats.addSale(sale.getRevenue(), sale.getProfit());
+            EmployeeStats stats = new EmployeeStats(seller);
+            stats.addSale(e.getValue().getRevenue(), e.getValue().getProfit());
+            result.add(stats);
         }
 
-        return new ArrayList<>(map.values());
+        return result;
     }
 
     // ---------- Reports ----------
 
+    // Reports are written straight to a file here; a Report keeps only the
+    // file reference and page offsets, so a report of any length costs the
+    // same heap.
+    public Path getReportDirectory() {
+        return reportDirectory;
+    }
+
+    public void setReportDirectory(Path reportDirectory) {
+        this.reportDirectory = reportDirectory;
+    }
+
+    interface ReportBody {
+        void write(ReportWriter out) throws IOException;
+    }
+
+    private Report writeReport(ReportType type, ReportBody body) {
+        int id;
+        synchronized (listLock) {
+            id = nextReportId++;
+        }
+        try {
+            Files.createDirectories(reportDirectory);
+            Path file = reportDirectory.resolve("report-" + id + "-" + type.name().toLowerCase() + ".txt");
+            ReportWriter out = new ReportWriter(Files.newOutputStream(file));
+            try {
+                body.write(out);
+            } finally {
+                out.close();
+            }
+            Report report = new Report(id, defaultManager, type, LocalDateTime.now(),
+                    file, out.getLineCount(), out.getPageOffsets());
+            synchronized (listLock) {
+                reports = reports.append(report);
+            }
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + type + " report", e);
+        }
+    }
+
     public Report generateStockReport() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("STOCK SUMMARY REPORT\n");
-        sb.append("====================\n");
+        return writeReport(ReportType.STOCK_SUMMARY, this::renderStockReport);
+    }
+
+    // Also usable with any other stream, e.g. a socket or a print job.
+    public void renderStockReport(ReportWriter out) throws IOException {
+        out.line("STOCK SUMMARY REPORT");
+        out.line("====================");
         for (Product p : products.values()) {
-            sb.append(String.format("%s (%s): %d units @ %.2f\n",
-                    p.getName(), p.getId(), p.getStockLevel(), p.getUnitPrice()));
+            out.text(p.getName()).text(" (").text(p.getId()).text("): ")
+                    .number(p.getStockLevel()).text(" units @ ").number(p.getUnitPrice(), 2).newLine();
         }
-        Report report = new Report(nextReportId++, defaultManager,
-                ReportType.STOCK_SUMMARY, sb.toString());
-        reports.add(report);
-        return report;
     }
 
     public Report generateLowStockReport() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("LOW STOCK REPORT\n");
-        sb.append("================\n");
+        return writeReport(ReportType.LOW_STOCK, this::renderLowStockReport);
+    }
+
+    public void renderLowStockReport(ReportWriter out) throws IOException {
+        out.line("LOW STOCK REPORT");
+        out.line("================");
         for (Product p : getLowStockProducts()) {
-            sb.append(String.format("%s (%s): %d units (reorder level: %d)\n",
-                    p.getName(), p.getId(), p.getStockLevel(), p.getReorderLevel()));
+            out.text(p.getName()).text(" (").text(p.getId()).text("): ")
+                    .number(p.getStockLevel()).text(" units (reorder level: ")
+                    .number(p.getReorderLevel()).text(')').newLine();
+        }
+    }
+
+    public Report generateExpiringReport(int withinDays) {
+        LocalDate today = LocalDate.now();
+        return writeReport(ReportType.EXPIRING, out -> {
+            out.text("EXPIRING WITHIN ").number(withinDays).text(" DAYS").newLine();
+            out.line("========================");
+            for (Product p : getExpiringProducts(withinDays)) {
+                out.text(p.getName()).text(" (").text(p.getId()).text("): ")
+                        .number(p.getStockLevel()).text(" units, expires ").text(p.getExpiryDate().toString())
+                        .text(" (").number(p.getExpiryDate().toEpochDay() - today.toEpochDay()).text(" days)")
+                        .newLine();
+            }
+        });
+    }
+
+    public Report generateDemandForecastReport(int horizonDays) {
+        List<DemandForecast> forecasts = new ArrayList<>(getDemandForecasts(horizonDays).values());
+        forecasts.sort(Comparator.comparingDouble(DemandForecast::getDaysOfCover));
+
+        return writeReport(ReportType.DEMAND_FORECAST, out -> {
+            out.text("DEMAND FORECAST REPORT (next ").number(horizonDays).text(" days)").newLine();
+            out.line("==========================================");
+            for (DemandForecast f : forecasts) {
+                Product p = f.getProduct();
+                double cover = f.getDaysOfCover();
+                out.text(p.getName()).text(" (").text(p.getId()).text("): ")
+                        .number(f.getDailyDemand(), 1).text(" units/day, ")
+                        .number(f.getHorizonDemand(), 0).text(" units forecast, ");
+                if (Double.isInfinite(cover)) {
+                    out.text("n/a");
+                } else {
+                    out.number(cover, 1);
+                }
+                out.text(" days of cover").newLine();
+            }
+        });
+    }
+
+    public Report generateCategoryReport() {
+        return writeReport(ReportType.CATEGORY_SUMMARY, out -> {
+            out.line("CATEGORY SUMMARY REPORT");
+            out.line("=======================");
+            for (Map.Entry<Category, CategoryIndex.Totals> e : getCategoryTotals().entrySet()) {
+                CategoryIndex.Totals t = e.getValue();
+                out.text(e.getKey().getName()).text(": ").number(t.getSkus()).text(" SKUs, ")
+                        .number(t.getUnits()).text(" units, value ").number(t.getValue(), 2).newLine();
+            }
+        });
+    }
+
+    // Built from the rollups: month buckets for whole months, day buckets at
+    // the edges of the range.
+    public Report generateSalesSummaryReport(LocalDate from, LocalDate to) {
+        return writeReport(ReportType.SALES_SUMMARY, out -> {
+            out.text("SALES SUMMARY REPORT (").text(from.toString()).text(" to ").text(to.toString()).text(')').newLine();
+            out.line("==========================================");
+            SalesTotals total = getSalesTotals(from, to);
+            out.number(total.getSaleCount()).text(" sales, ");
+            writeTotals(out, total);
+
+            out.newLine().line("By month:");
+            for (YearMonth m = YearMonth.from(from); !m.isAfter(YearMonth.from(to)); m = m.plusMonths(1)) {
+                LocalDate start = m.atDay(1).isBefore(from) ? from : m.atDay(1);
+                LocalDate end = m.atEndOfMonth().isAfter(to) ? to : m.atEndOfMonth();
+                SalesTotals t = getSalesTotals(start, end);
+                if (t.getSaleCount() == 0) continue;
+                out.text("  ").text(m.toString()).text(": ");
+                writeTotals(out, t);
+            }
+
+            out.newLine().line("By category:");
+            for (Map.Entry<Category, SalesTotals> e : getSalesByCategory(from, to).entrySet()) {
+                out.text("  ").text(e.getKey().getName()).text(": ");
+                writeTotals(out, e.getValue());
+            }
+
+            out.newLine().line("By product:");
+            List<Map.Entry<Product, SalesTotals>> byProduct = new ArrayList<>(getSalesByProduct(from, to).entrySet());
+            byProduct.sort((a, b) -> Double.compare(b.getValue().getRevenue(), a.getValue().getRevenue()));
+            for (Map.Entry<Product, SalesTotals> e : byProduct) {
+                out.text("  ").text(e.getKey().getName()).text(" (").text(e.getKey().getId()).text("): ");
+                writeTotals(out, e.getValue());
+            }
+        });
+    }
+
+    private static void writeTotals(ReportWriter out, SalesTotals t) throws IOException {
+        out.number(t.getUnits()).text(" units, revenue ").number(t.getRevenue(), 2)
+                .text(", profit ").number(t.getProfit(), 2).newLine();
+    }
+
+    public Report generateBestSellersReport(int n) {
+        return writeReport(ReportType.BEST_SELLERS, out -> {
+            out.line("BEST SELLERS REPORT");
+            out.line("===================");
+            writeRanking(out, "Top sellers today", getTopSellersToday(n));
+            writeRanking(out, "Top sellers, last " + SalesLeaderboard.WEEK_DAYS + " days", getTopSellersThisWeek(n));
+            writeRanking(out, "Slow movers, last " + SalesLeaderboard.WEEK_DAYS + " days", getSlowMovers(n));
+            writeRanking(out, "All-time leaders (approximate)", getHeavyHitters(n));
+        });
+    }
+
+    private static void writeRanking(ReportWriter out, String title, List<ProductSalesCount> ranking) throws IOException {
+        out.newLine().text(title).text(':').newLine();
+        if (ranking.isEmpty()) {
+            out.line("  (none)");
+        }
+        int rank = 1;
+        for (ProductSalesCount c : ranking) {
+            out.text("  ").number(rank++).text(". ").text(c.getProduct().getName())
+                    .text(" (").text(c.getProduct().getId()).text("): ").number(c.getUnits()).text(" units").newLine();
         }
-        Report report = new Report(nextReportId++, defaultManager,
-                ReportType.LOW_STOCK, sb.toString());
-        reports.add(report);
-        return report;
     }
 
+    public Report generateStockAsOfReport(LocalDate date) {
+        return writeReport(ReportType.STOCK_AS_OF, out -> {
+            out.text("STOCK AS OF ").text(date.toString()).newLine();
+            out.line("=====================");
+            for (Map.Entry<String, Integer> e : getAllStockAt(date).entrySet()) {
+                Product p = products.get(e.getKey());
+                String name = p != null ? p.getName() : "(removed)";
+                out.text(name).text(" (").text(e.getKey()).text("): ").number(e.getValue()).text(" units").newLine();
+            }
+            out.text("Total value: ").number(getInventoryValueAt(date), 2).newLine();
+        });
+    }
+
+    // A read-only view of the current version; copy it to sort or edit it.
     public List<Report> getAllReports() {
-        return new ArrayList<>(reports);
+        return Collections.unmodifiableList(reports);
     }
 }
@@ -0,0 +1,167 @@
+package com.inventory.service;
+
+import com.inventory.model.InventoryEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+// State rebuilt by folding ledger events in order: per-product stock and
+// master data, stock request and purchase order statuses, and sales totals.
+public class LedgerProjection {
+
+    public static class ProductState {
+        private String name;
+        private String category;
+        private double unitPrice;
+        private int reorderLevel;
+        private int stockLevel;
+        private LocalDate expiryDate;
+
+        public String getName() { return name; }
+        public String getCategory() { return category; }
+        public double getUnitPrice() { return unitPrice; }
+        public int getReorderLevel() { return reorderLevel; }
+        public int getStockLevel() { return stockLevel; }
+        public LocalDate getExpiryDate() { return expiryDate; }
+    }
+
+    private final Map<String, ProductState> products = new HashMap<>();
+    private final Map<Integer, String> requestStatuses = new HashMap<>();
+    private final Map<Integer, String> purchaseOrderStatuses = new HashMap<>();
+    private long eventCount;
+    private long saleCount;
+    private double totalRevenue;
+    private double totalProfit;
+
+    public void apply(InventoryEvent e) {
+        eventCount++;
+        switch (e.getType()) {
+            case ITEM_ADDED: {
+                ProductState p = new ProductState();
+                p.name = e.getText1();
+                p.category = e.getText2();
+                p.unitPrice = e.getPrice();
+                p.reorderLevel = e.getReorderLevel();
+                p.stockLevel = e.getQuantity();
+                p.expiryDate = e.getExpiryDate();
+                products.put(e.getProductId(), p);
+                break;
+            }
+            case STOCK_ADJUSTED:
+            case STOCK_RECEIVED:
+                adjust(e.getProductId(), e.getStockDelta());
+                break;
+            case SALE:
+                adjust(e.getProductId(), e.getStockDelta());
+                saleCount++;
+                totalRevenue += e.getPrice() * e.getQuantity();
+                totalProfit += (e.getPrice() - e.getCost()) * e.getQuantity();
+                break;
+            case PRICE_CHANGED: {
+                ProductState p = products.get(e.getProductId());
+                if (p != null) p.unitPrice = e.getPrice();
+                break;
+            }
+            case REQUEST_CREATED:
+                requestStatuses.put(e.getRefId(), "PENDING");
+                break;
+            case REQUEST_APPROVED:
+                requestStatuses.put(e.getRefId(), "APPROVED");
+                adjust(e.getProductId(), e.getStockDelta());
+                break;
+            case REQUEST_REJECTED:
+                requestStatuses.put(e.getRefId(), "REJECTED");
+                break;
+            case PO_CREATED:
+                purchaseOrderStatuses.put(e.getRefId(), "CREATED");
+                break;
+            case PO_STATUS_CHANGED:
+                purchaseOrderStatuses.put(e.getRefId(), e.getText1());
+                break;
+            default:
+                // Transfers and PO lines don't change anything tracked here.
+                break;
+        }
+    }
+
+    private void adjust(String productId, int delta) {
+        ProductState p = products.get(productId);
+        if (p != null) {
+            p.stockLevel += delta;
+        }
+    }
+
+    public ProductState getProduct(String productId) { return products.get(productId); }
+    public Map<String, ProductState> getProducts() { return Collections.unmodifiableMap(products); }
+    public String getRequestStatus(int requestId) { return requestStatuses.get(requestId); }
+    public int getLastRequestId() { return requestStatuses.isEmpty() ? 0 : Collections.max(requestStatuses.keySet()); }
+    public String getPurchaseOrderStatus(int poId) { return purchaseOrderStatuses.get(poId); }
+    public long getEventCount() { return eventCount; }
+    public long getSaleCount() { return saleCount; }
+    public double getTotalRevenue() { return totalRevenue; }
+    public double getTotalProfit() { return totalProfit; }
+
+    // ---------- Snapshots ----------
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(eventCount);
+        out.writeLong(saleCount);
+        out.writeDouble(totalRevenue);
+        out.writeDouble(totalProfit);
+        out.writeInt(products.size());
+        for (Map.Entry<String, ProductState> e : products.entrySet()) {
+            ProductState p = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeUTF(p.name != null ? p.name : "");
+            out.writeUTF(p.category != null ? p.category : "");
+            out.writeDouble(p.unitPrice);
+            out.writeInt(p.reorderLevel);
+            out.writeInt(p.stockLevel);
+            out.writeLong(p.expiryDate != null ? p.expiryDate.toEpochDay() : Long.MIN_VALUE);
+        }
+        writeStatuses(out, requestStatuses);
+        writeStatuses(out, purchaseOrderStatuses);
+    }
+
+    static LedgerProjection readFrom(DataInputStream in) throws IOException {
+        LedgerProjection projection = new LedgerProjection();
+        projection.eventCount = in.readLong();
+        projection.saleCount = in.readLong();
+        projection.totalRevenue = in.readDouble();
+        projection.totalProfit = in.readDouble();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String id = in.readUTF();
+            ProductState p = new ProductState();
+            p.name = in.readUTF();
+            p.category = in.readUTF();
+            p.unitPrice = in.readDouble();
+            p.reorderLevel = in.readInt();
+            p.stockLevel = in.readInt();
+            long expiryDay = in.readLong();
+            p.expiryDate = expiryDay != Long.MIN_VALUE ? LocalDate.ofEpochDay(expiryDay) : null;
+            projection.products.put(id, p);
+        }
+        readStatuses(in, projection.requestStatuses);
+        readStatuses(in, projection.purchaseOrderStatuses);
+        return projection;
+    }
+
+    private static void writeStatuses(DataOutputStream out, Map<Integer, String> statuses) throws IOException {
+        out.writeInt(statuses.size());
+        for (Map.Entry<Integer, String> e : statuses.entrySet()) {
+            out.writeInt(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    private static void readStatuses(DataInputStream in, Map<Integer, String> statuses) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            statuses.put(in.readInt(), in.readUTF());
+        }
+    }
+}
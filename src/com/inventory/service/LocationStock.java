@@ -0,0 +1,296 @@
+package com.inventory.service;
+
+import com.inventory.model.Location;
+import com.inventory.model.Product;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// Stock partitioned by location. Each product at each location is a single
+// AtomicLong holding on-hand units in the high 32 bits and reserved units in
+// the low 32 bits, so every change is one CAS: locations never contend with
+// each other, and a reservation and a sale can't both claim the same units.
+// Counters are indexed by product ordinal, so finding one doesn't hash the
+// product id. Rollups across partitions run as a fork/join task.
+public class LocationStock {
+
+    private static class Partition {
+        final Location location;
+        final OrdinalMap<AtomicLong> counters = new OrdinalMap<>();
+
+        Partition(Location location) {
+            this.location = location;
+        }
+
+        AtomicLong counter(int ordinal) {
+            return counters.computeIfAbsent(ordinal, k -> new AtomicLong());
+        }
+    }
+
+    public static class Rollup {
+        private long totalUnits;
+        private double totalValue;
+        private final Map<String, Integer> unitsByProduct = new HashMap<>();
+
+        public long getTotalUnits() { return totalUnits; }
+        public double getTotalValue() { return totalValue; }
+        public Map<String, Integer> getUnitsByProduct() { return unitsByProduct; }
+
+        private Rollup merge(Rollup other) {
+            totalUnits += other.totalUnits;
+            totalValue += other.totalValue;
+            other.unitsByProduct.forEach((k, v) -> unitsByProduct.merge(k, v, Integer::sum));
+            return this;
+        }
+    }
+
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final IntFunction<Product> products;
+
+    // 'products' maps an ordinal back to its product, for rollups and messages.
+    public LocationStock(IntFunction<Product> products) {
+        this.products = products;
+    }
+
+    static int onHand(long packed) { return (int) (packed >>> 32); }
+    static int reserved(long packed) { return (int) packed; }
+    static long pack(int onHand, int reserved) { return ((long) onHand << 32) | (reserved & 0xffffffffL); }
+
+    public void addLocation(Location location) {
+        partitions.putIfAbsent(location.getId(), new Partition(location));
+    }
+
+    public List<Location> getLocations() {
+        List<Location> list = new ArrayList<>();
+        for (Partition p : partitions.values()) {
+            list.add(p.location);
+        }
+        list.sort(Comparator.comparing(Location::getId));
+        return list;
+    }
+
+    public int get(String locationId, int ordinal) {
+        AtomicLong c = partition(locationId).counters.get(ordinal);
+        return c != null ? onHand(c.get()) : 0;
+    }
+
+    public int getReserved(String locationId, int ordinal) {
+        AtomicLong c = partition(locationId).counters.get(ordinal);
+        return c != null ? reserved(c.get()) : 0;
+    }
+
+    public int getAvailable(String locationId, int ordinal) {
+        AtomicLong c = partition(locationId).counters.get(ordinal);
+        if (c == null) return 0;
+        long v = c.get();
+        return onHand(v) - reserved(v);
+    }
+
+    public Map<String, Integer> getByLocation(int ordinal) {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Partition p : partitions.values()) {
+            int qty = get(p.location.getId(), ordinal);
+            if (qty != 0) result.put(p.location.getId(), qty);
+        }
+        return result;
+    }
+
+    // Decreases may only use units that aren't reserved.
+    public void adjust(String locationId, int ordinal, int delta) {
+        if (!tryAdjust(partition(locationId).counter(ordinal), delta)) {
+            throw insufficient(ordinal, locationId);
+        }
+    }
+
+    // Takes quantities[i] unreserved units of ordinals[i], from 'preferred'
+    // first and then from the other locations in id order, as a unit: if the
+    // locations together can't cover a line, everything taken is put back.
+    public void takeAll(String preferred, int[] ordinals, int[] quantities) {
+        Partition first = partition(preferred);
+        Partition[] parts = new Partition[partitions.size()];
+        parts[0] = first;
+        int n = 1;
+        for (Partition p : partitions.values()) {
+            if (p != first && n < parts.length) parts[n++] = p;
+        }
+        Arrays.sort(parts, 1, n, Comparator.comparing(p -> p.location.getId()));
+
+        int[] taken = new int[ordinals.length * n];
+        for (int i = 0; i < ordinals.length; i++) {
+            int remaining = quantities[i];
+            for (int j = 0; j < n && remaining > 0; j++) {
+                AtomicLong c = parts[j].counters.get(ordinals[i]);
+                if (c == null) continue;
+                int take = tryTake(c, remaining);
+                taken[i * n + j] = take;
+                remaining -= take;
+            }
+            if (remaining > 0) {
+                for (int k = 0; k <= i; k++) {
+                    for (int j = 0; j < n; j++) {
+                        if (taken[k * n + j] > 0) tryAdjust(parts[j].counter(ordinals[k]), taken[k * n + j]);
+                    }
+                }
+                throw insufficient(ordinals[i], "any location");
+            }
+        }
+    }
+
+    // Zeroes the product's stock at every location. Refused while any of its
+    // units are held, since the holds would lose their reserved units; stock
+    // already zeroed is then put back.
+    public void reset(int ordinal) {
+        List<AtomicLong> zeroed = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (Partition p : partitions.values()) {
+            AtomicLong c = p.counters.get(ordinal);
+            if (c == null) continue;
+            while (true) {
+                long v = c.get();
+                if (reserved(v) > 0) {
+                    for (int i = 0; i < zeroed.size(); i++) {
+                        tryAdjust(zeroed.get(i), quantities.get(i));
+                    }
+                    Product product = products.apply(ordinal);
+                    throw new IllegalStateException("Product " + (product != null ? product.getId() : "#" + ordinal)
+                            + " has reserved stock; confirm or cancel its reservations first.");
+                }
+                if (c.compareAndSet(v, 0L)) {
+                    zeroed.add(c);
+                    quantities.add(onHand(v));
+                    break;
+                }
+            }
+        }
+    }
+
+    // Units leave the source with one CAS and are then added to the
+    // destination, which can't fail, so a transfer never half-completes.
+    public void transfer(int ordinal, String fromId, String toId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Source and destination are the same location.");
+        }
+        Partition to = partition(toId);
+        adjust(fromId, ordinal, -quantity);
+        tryAdjust(to.counter(ordinal), quantity);
+    }
+
+    // ---------- Reservations ----------
+
+    public boolean tryReserve(String locationId, int ordinal, int quantity) {
+        AtomicLong c = partition(locationId).counter(ordinal);
+        while (true) {
+            long v = c.get();
+            if (onHand(v) - reserved(v) < quantity) return false;
+            if (c.compareAndSet(v, pack(onHand(v), reserved(v) + quantity))) return true;
+        }
+    }
+
+    public void release(String locationId, int ordinal, int quantity) {
+        AtomicLong c = partition(locationId).counter(ordinal);
+        while (true) {
+            long v = c.get();
+            int r = Math.max(0, reserved(v) - quantity);
+            if (c.compareAndSet(v, pack(onHand(v), r))) return;
+        }
+    }
+
+    // Turns reserved units into a removal: on-hand and reserved drop together.
+    public void consumeReserved(String locationId, int ordinal, int quantity) {
+        AtomicLong c = partition(locationId).counter(ordinal);
+        while (true) {
+            long v = c.get();
+            if (reserved(v) < quantity || onHand(v) < quantity) {
+                throw insufficient(ordinal, locationId);
+            }
+            if (c.compareAndSet(v, pack(onHand(v) - quantity, reserved(v) - quantity))) return;
+        }
+    }
+
+    public Rollup rollup() {
+        Partition[] parts = partitions.values().toArray(new Partition[0]);
+        if (parts.length == 0) return new Rollup();
+        return ForkJoinPool.commonPool().invoke(new RollupTask(parts, 0, parts.length, products));
+    }
+
+    private static boolean tryAdjust(AtomicLong c, int delta) {
+        while (true) {
+            long v = c.get();
+            int qty = onHand(v) + delta;
+            if (delta < 0 && qty < reserved(v)) return false;
+            if (c.compareAndSet(v, pack(qty, reserved(v)))) return true;
+        }
+    }
+
+    // Takes up to max unreserved units and returns how many it took.
+    private static int tryTake(AtomicLong c, int max) {
+        while (true) {
+            long v = c.get();
+            int take = Math.min(max, onHand(v) - reserved(v));
+            if (take <= 0) return 0;
+            if (c.compareAndSet(v, pack(onHand(v) - take, reserved(v)))) return take;
+        }
+    }
+
+    private IllegalArgumentException insufficient(int ordinal, String locationId) {
+        Product product = products.apply(ordinal);
+        return new IllegalArgumentException("Insufficient stock for product "
+                + (product != null ? product.getId() : "#" + ordinal) + " at " + locationId);
+    }
+
+    private Partition partition(String locationId) {
+        Partition p = partitions.get(locationId);
+        if (p == null) {
+            throw new IllegalArgumentException("Location not found: " + locationId);
+        }
+        return p;
+    }
+
+    private static class RollupTask extends RecursiveTask<Rollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final Partition[] parts;
+        private final int from;
+        private final int to;
+        private final IntFunction<Product> productLookup;
+
+        RollupTask(Partition[] parts, int from, int to, IntFunction<Product> productLookup) {
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.productLookup = productLookup;
+        }
+
+        @Override
+        protected Rollup compute() {
+            if (to - from == 1) {
+                return rollupPartition(parts[from]);
+            }
+            int mid = (from + to) >>> 1;
+            RollupTask left = new RollupTask(parts, from, mid, productLookup);
+            left.fork();
+            Rollup right = new RollupTask(parts, mid, to, productLookup).compute();
+            return left.join().merge(right);
+        }
+
+        private Rollup rollupPartition(Partition p) {
+            Rollup r = new Rollup();
+            p.counters.forEach((counter, ordinal) -> {
+                int qty = onHand(counter.get());
+                Product product = productLookup.apply(ordinal);
+                if (qty == 0 || product == null) return;
+                r.totalUnits += qty;
+                r.unitsByProduct.put(product.getId(), qty);
+                r.totalValue += qty * product.getUnitPrice();
+            });
+            return r;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.inventory.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// FIFO queue of stock lots for one product, stored as parallel arrays used as
+// a ring buffer. Adding a lot is O(1) amortized; consuming is O(lots emptied),
+// which is O(1) amortized per sale since each lot is emptied once.
+public class LotQueue {
+
+    private static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    // Cost of a lot whose purchase price isn't known, such as opening stock
+    // or a manual increase.
+    public static final double UNKNOWN_COST = Double.NaN;
+
+    // One lot as saved and restored.
+    public static final class Lot {
+        private final int quantity;
+        private final double unitCost;
+        private final LocalDate expiryDate;
+
+        public Lot(int quantity, double unitCost, LocalDate expiryDate) {
+            this.quantity = quantity;
+            this.unitCost = unitCost;
+            this.expiryDate = expiryDate;
+        }
+
+        public int getQuantity() { return quantity; }
+        public double getUnitCost() { return unitCost; }
+        public LocalDate getExpiryDate() { return expiryDate; }
+    }
+
+    private int[] quantity = new int[4];
+    private double[] unitCost = new double[4];
+    private long[] expiryDay = new long[4];
+    private int head;
+    private int size;
+    private long totalQuantity;
+    private double lastKnownCost = UNKNOWN_COST;
+
+    public synchronized void add(int qty, double cost, LocalDate expiry) {
+        if (qty <= 0) return;
+        if (size == quantity.length) grow();
+        int tail = (head + size) % quantity.length;
+        quantity[tail] = qty;
+        unitCost[tail] = cost;
+        expiryDay[tail] = expiry != null ? expiry.toEpochDay() : NO_EXPIRY;
+        size++;
+        totalQuantity += qty;
+        if (!Double.isNaN(cost)) lastKnownCost = cost;
+    }
+
+    // Removes up to qty units, oldest lot first, and returns their total cost.
+    // Units of unknown cost, and units beyond what the lots hold, are costed
+    // at the most recent known lot cost, or at fallbackCost if there is none.
+    public synchronized double consume(int qty, double fallbackCost) {
+        double cost = 0;
+        int remaining = qty;
+        while (remaining > 0 && size > 0) {
+            int take = Math.min(remaining, quantity[head]);
+            cost += take * costOf(head, fallbackCost);
+            quantity[head] -= take;
+            remaining -= take;
+            totalQuantity -= take;
+            if (quantity[head] == 0) {
+                head = (head + 1) % quantity.length;
+                size--;
+            }
+        }
+        return cost + remaining * estimatedCost(fallbackCost);
+    }
+
+    public synchronized long getTotalQuantity() { return totalQuantity; }
+
+    // The lots still held, oldest first.
+    public synchronized List<Lot> getLots() {
+        List<Lot> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) % quantity.length;
+            result.add(new Lot(quantity[idx], unitCost[idx],
+                    expiryDay[idx] != NO_EXPIRY ? LocalDate.ofEpochDay(expiryDay[idx]) : null));
+        }
+        return result;
+    }
+
+    public synchronized int getLotCount() { return size; }
+
+    public synchronized double getTotalCost(double fallbackCost) {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) % quantity.length;
+            total += quantity[idx] * costOf(idx, fallbackCost);
+        }
+        return total;
+    }
+
+    private double costOf(int idx, double fallbackCost) {
+        return Double.isNaN(unitCost[idx]) ? estimatedCost(fallbackCost) : unitCost[idx];
+    }
+
+    // Cost of the newest lot with a known cost, or UNKNOWN_COST.
+    public synchronized double getLastKnownCost() { return lastKnownCost; }
+
+    private double estimatedCost(double fallbackCost) {
+        return Double.isNaN(lastKnownCost) ? fallbackCost : lastKnownCost;
+    }
+
+    public synchronized LocalDate getNextExpiry() {
+        for (int i = 0; i < size; i++) {
+            long day = expiryDay[(head + i) % quantity.length];
+            if (day != NO_EXPIRY) return LocalDate.ofEpochDay(day);
+        }
+        return null;
+    }
+
+    private void grow() {
+        int n = quantity.length;
+        int[] q = new int[n * 2];
+        double[] c = new double[n * 2];
+        long[] e = new long[n * 2];
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) % n;
+            q[i] = quantity[idx];
+            c[i] = unitCost[idx];
+            e[i] = expiryDay[idx];
+        }
+        quantity = q;
+        unitCost = c;
+        expiryDay = e;
+        head = 0;
+    }
+}
@@ -0,0 +1,69 @@
+package com.inventory.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+// Per-product values indexed by the product's ordinal (see ProductTable), so
+// a lookup is an array read with no hashing or boxing.
+//
+// Readers take no lock. Writers are serialized, and the array sits behind a
+// volatile field, so a resize copies everything set before it and a reader
+// always sees the current array.
+public class OrdinalMap<T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile AtomicReferenceArray<T> values = new AtomicReferenceArray<>(MIN_CAPACITY);
+
+    public T get(int ordinal) {
+        AtomicReferenceArray<T> v = values;
+        return ordinal >= 0 && ordinal < v.length() ? v.get(ordinal) : null;
+    }
+
+    public T computeIfAbsent(int ordinal, IntFunction<? extends T> factory) {
+        T value = get(ordinal);
+        if (value != null) return value;
+        synchronized (this) {
+            value = get(ordinal);
+            if (value == null) {
+                value = factory.apply(ordinal);
+                ensureCapacity(ordinal).set(ordinal, value);
+            }
+            return value;
+        }
+    }
+
+    // A null value removes the entry.
+    public synchronized void put(int ordinal, T value) {
+        if (value == null && get(ordinal) == null) return;
+        ensureCapacity(ordinal).set(ordinal, value);
+    }
+
+    // Visits every entry in ordinal order.
+    public void forEach(ObjIntConsumer<? super T> action) {
+        AtomicReferenceArray<T> v = values;
+        for (int i = 0; i < v.length(); i++) {
+            T value = v.get(i);
+            if (value != null) action.accept(value, i);
+        }
+    }
+
+    private AtomicReferenceArray<T> ensureCapacity(int ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Negative ordinal: " + ordinal);
+        }
+        AtomicReferenceArray<T> v = values;
+        if (ordinal < v.length()) return v;
+        int capacity = v.length();
+        while (capacity <= ordinal) {
+            capacity *= 2;
+        }
+        AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < v.length(); i++) {
+            grown.set(i, v.get(i));
+        }
+        values = grown;
+        return grown;
+    }
+}
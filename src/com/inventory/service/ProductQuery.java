@@ -0,0 +1,207 @@
+package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.*;
+
+// A query over products: a condition tree plus optional sort and limit.
+// Build one with the static factories and run it with
+// InventoryService.queryProducts; explainQuery shows how it will be run.
+//
+//   ProductQuery.where(ProductQuery.and(
+//           ProductQuery.categoryIs("Grocery"),
+//           ProductQuery.lowStock()))
+//       .sortBy(ProductQuery.Sort.STOCK, false)
+//       .limit(20);
+public final class ProductQuery {
+
+    public enum Sort { ID, NAME, PRICE, STOCK, STOCK_VALUE }
+
+    public abstract static class Condition {
+        private Condition() {}
+
+        public abstract boolean test(Product p);
+    }
+
+    public static final class CategoryIs extends Condition {
+        final String category;
+
+        CategoryIs(String category) { this.category = category; }
+
+        @Override
+        public boolean test(Product p) {
+            return p.getCategory() != null && p.getCategory().trim().equalsIgnoreCase(category.trim());
+        }
+
+        @Override
+        public String toString() { return "category = '" + category + "'"; }
+    }
+
+    public static final class PriceBetween extends Condition {
+        final double min;
+        final double max;
+
+        PriceBetween(double min, double max) { this.min = min; this.max = max; }
+
+        @Override
+        public boolean test(Product p) {
+            return p.getUnitPrice() >= min && p.getUnitPrice() <= max;
+        }
+
+        @Override
+        public String toString() { return String.format("price between %.2f and %.2f", min, max); }
+    }
+
+    public static final class StockBelow extends Condition {
+        final int limit;
+
+        StockBelow(int limit) { this.limit = limit; }
+
+        @Override
+        public boolean test(Product p) {
+            return p.getStockLevel() < limit;
+        }
+
+        @Override
+        public String toString() { return "stock < " + limit; }
+    }
+
+    public static final class StockValueBetween extends Condition {
+        final double min;
+        final double max;
+
+        StockValueBetween(double min, double max) { this.min = min; this.max = max; }
+
+        @Override
+        public boolean test(Product p) {
+            double value = p.getStockLevel() * p.getUnitPrice();
+            return value >= min && value <= max;
+        }
+
+        @Override
+        public String toString() { return String.format("stock value between %.2f and %.2f", min, max); }
+    }
+
+    public static final class LowStock extends Condition {
+        LowStock() {}
+
+        @Override
+        public boolean test(Product p) {
+            return p.isLowStock();
+        }
+
+        @Override
+        public String toString() { return "low stock"; }
+    }
+
+    public static final class NameMatches extends Condition {
+        final String text;
+        private final String lower;
+
+        NameMatches(String text) {
+            this.text = text;
+            this.lower = text.toLowerCase();
+        }
+
+        @Override
+        public boolean test(Product p) {
+            return p.getName() != null && p.getName().toLowerCase().contains(lower);
+        }
+
+        @Override
+        public String toString() { return "name contains '" + text + "'"; }
+    }
+
+    public static final class And extends Condition {
+        final List<Condition> parts;
+
+        And(List<Condition> parts) { this.parts = parts; }
+
+        @Override
+        public boolean test(Product p) {
+            for (Condition c : parts) {
+                if (!c.test(p)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() { return join(parts, " AND "); }
+    }
+
+    public static final class Or extends Condition {
+        final List<Condition> parts;
+
+        Or(List<Condition> parts) { this.parts = parts; }
+
+        @Override
+        public boolean test(Product p) {
+            for (Condition c : parts) {
+                if (c.test(p)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() { return join(parts, " OR "); }
+    }
+
+    public static Condition categoryIs(String category) { return new CategoryIs(category); }
+    public static Condition priceBetween(double min, double max) { return new PriceBetween(min, max); }
+    public static Condition stockBelow(int limit) { return new StockBelow(limit); }
+    public static Condition stockValueBetween(double min, double max) { return new StockValueBetween(min, max); }
+    public static Condition lowStock() { return new LowStock(); }
+    public static Condition nameMatches(String text) { return new NameMatches(text); }
+    public static Condition and(Condition... parts) { return new And(List.of(parts)); }
+    public static Condition or(Condition... parts) { return new Or(List.of(parts)); }
+
+    private final Condition condition;
+    private Sort sort;
+    private boolean ascending = true;
+    private int limit = -1;
+
+    private ProductQuery(Condition condition) {
+        this.condition = condition;
+    }
+
+    public static ProductQuery where(Condition condition) {
+        return new ProductQuery(condition);
+    }
+
+    public ProductQuery sortBy(Sort sort, boolean ascending) {
+        this.sort = sort;
+        this.ascending = ascending;
+        return this;
+    }
+
+    public ProductQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public Condition getCondition() { return condition; }
+    public Sort getSort() { return sort; }
+    public boolean isAscending() { return ascending; }
+    public int getLimit() { return limit; }
+
+    Comparator<Product> comparator() {
+        if (sort == null) return null;
+        Comparator<Product> c;
+        switch (sort) {
+            case NAME:  c = Comparator.comparing(Product::getName, Comparator.nullsFirst(String::compareTo)); break;
+            case PRICE: c = Comparator.comparingDouble(Product::getUnitPrice); break;
+            case STOCK: c = Comparator.comparingInt(Product::getStockLevel); break;
+            case STOCK_VALUE: c = Comparator.comparingDouble(p -> p.getStockLevel() * p.getUnitPrice()); break;
+            default:    c = Comparator.comparing(Product::getId); break;
+        }
+        return ascending ? c : c.reversed();
+    }
+
+    private static String join(List<Condition> parts, String separator) {
+        StringJoiner sj = new StringJoiner(separator, "(", ")");
+        for (Condition c : parts) {
+            sj.add(c.toString());
+        }
+        return sj.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Plans and runs ProductQuery conditions.
+//
+// Each condition the indexes can answer becomes a BitSet of candidate
+// product ordinals: categories from the category bitsets, low stock from the
+// low-stock set, names from the trigram index, and price, stock and stock
+// value ranges from the sorted range indexes. AND intersects whichever of
+// its parts are indexed and checks the rest per candidate; OR unions its
+// parts only if every one is indexed. When nothing narrows the search the
+// query falls back to a parallel scan. Candidates are always re-checked
+// against the full condition, so an index only has to return a superset.
+public class ProductQueryEngine {
+
+    static final class Plan {
+        final String description;
+        final BitSet candidates; // null: no index helps
+        final List<Plan> children;
+
+        Plan(String description, BitSet candidates, List<Plan> children) {
+            this.description = description;
+            this.candidates = candidates;
+            this.children = children;
+        }
+
+        Plan(String description, BitSet candidates) {
+            this(description, candidates, Collections.emptyList());
+        }
+    }
+
+    private final ProductTable products;
+    private final CategoryIndex categories;
+    private final ProductSearchIndex searchIndex;
+    private final OrdinalMap<Product> lowStock;
+    private final RangeIndex priceIndex;
+    private final RangeIndex stockIndex;
+    private final RangeIndex stockValueIndex;
+
+    ProductQueryEngine(ProductTable products, CategoryIndex categories,
+                       ProductSearchIndex searchIndex, OrdinalMap<Product> lowStock,
+                       RangeIndex priceIndex, RangeIndex stockIndex, RangeIndex stockValueIndex) {
+        this.products = products;
+        this.categories = categories;
+        this.searchIndex = searchIndex;
+        this.lowStock = lowStock;
+        this.priceIndex = priceIndex;
+        this.stockIndex = stockIndex;
+        this.stockValueIndex = stockValueIndex;
+    }
+
+    public List<Product> execute(ProductQuery query) {
+        Plan plan = plan(query.getCondition());
+        ProductQuery.Condition condition = query.getCondition();
+
+        List<Product> matches;
+        if (plan.candidates == null) {
+            matches = products.values().parallelStream()
+                    .filter(condition::test)
+                    .collect(Collectors.toList());
+        } else {
+            matches = new ArrayList<>();
+            BitSet bits = plan.candidates;
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                Product p = products.get(i);
+                if (p != null && condition.test(p)) matches.add(p);
+            }
+        }
+        return sortAndLimit(matches, query.comparator(), query.getLimit());
+    }
+
+    public String explain(ProductQuery query) {
+        Plan plan = plan(query.getCondition());
+        StringBuilder sb = new StringBuilder();
+        render(plan, 0, sb);
+        if (plan.candidates == null) {
+            sb.append("access: parallel scan of ").append(products.size()).append(" products\n");
+        } else {
+            sb.append("access: ").append(plan.candidates.cardinality()).append(" index candidates of ")
+                    .append(products.size()).append(" products\n");
+        }
+        sb.append("filter: ").append(query.getCondition()).append("\n");
+        if (query.getSort() != null) {
+            sb.append("sort: ").append(query.getSort()).append(query.isAscending() ? " asc" : " desc").append("\n");
+        }
+        if (query.getLimit() >= 0) {
+            sb.append("limit: ").append(query.getLimit())
+                    .append(query.getSort() != null ? " (top-k heap)" : "").append("\n");
+        }
+        return sb.toString();
+    }
+
+    Plan plan(ProductQuery.Condition c) {
+        if (c instanceof ProductQuery.CategoryIs) {
+            String name = ((ProductQuery.CategoryIs) c).category;
+            return new Plan("category bitset '" + name + "'", categories.membersOf(List.of(name)));
+        }
+        if (c instanceof ProductQuery.PriceBetween) {
+            ProductQuery.PriceBetween r = (ProductQuery.PriceBetween) c;
+            return new Plan("price index " + c, centsRange(priceIndex, r.min, r.max));
+        }
+        if (c instanceof ProductQuery.StockValueBetween) {
+            ProductQuery.StockValueBetween r = (ProductQuery.StockValueBetween) c;
+            return new Plan("stock value index " + c, centsRange(stockValueIndex, r.min, r.max));
+        }
+        if (c instanceof ProductQuery.StockBelow) {
+            return new Plan("stock index " + c, stockIndex.below(((ProductQuery.StockBelow) c).limit));
+        }
+        if (c instanceof ProductQuery.LowStock) {
+            BitSet ordinals = new BitSet();
+            lowStock.forEach((p, ordinal) -> ordinals.set(ordinal));
+            return new Plan("low-stock index", ordinals);
+        }
+        if (c instanceof ProductQuery.NameMatches) {
+            String text = ((ProductQuery.NameMatches) c).text;
+            // Shorter keywords have no trigrams; the text index would scan anyway.
+            if (text.length() >= 3) {
+                return new Plan("text index '" + text + "'", ordinalsOf(searchIndex.search(text)));
+            }
+            return new Plan("no index: " + c, null);
+        }
+        if (c instanceof ProductQuery.And) {
+            return planAnd(((ProductQuery.And) c).parts);
+        }
+        if (c instanceof ProductQuery.Or) {
+            return planOr(((ProductQuery.Or) c).parts);
+        }
+        return new Plan("no index: " + c, null);
+    }
+
+    private Plan planAnd(List<ProductQuery.Condition> parts) {
+        List<Plan> children = new ArrayList<>();
+        List<BitSet> indexed = new ArrayList<>();
+        for (ProductQuery.Condition part : parts) {
+            Plan child = plan(part);
+            children.add(child);
+            if (child.candidates != null) indexed.add(child.candidates);
+        }
+        if (indexed.isEmpty()) {
+            return new Plan("AND (no indexed part)", null, children);
+        }
+        // Start from the smallest set so the intersection shrinks fastest.
+        indexed.sort(Comparator.comparingInt(BitSet::cardinality));
+        BitSet result = (BitSet) indexed.get(0).clone();
+        for (int i = 1; i < indexed.size() && !result.isEmpty(); i++) {
+            result.and(indexed.get(i));
+        }
+        return new Plan("AND intersect " + indexed.size() + " of " + parts.size() + " parts", result, children);
+    }
+
+    private Plan planOr(List<ProductQuery.Condition> parts) {
+        List<Plan> children = new ArrayList<>();
+        BitSet result = new BitSet();
+        boolean allIndexed = true;
+        for (ProductQuery.Condition part : parts) {
+            Plan child = plan(part);
+            children.add(child);
+            if (child.candidates == null) {
+                allIndexed = false;
+            } else {
+                result.or(child.candidates);
+            }
+        }
+        if (!allIndexed) {
+            return new Plan("OR (a part has no index)", null, children);
+        }
+        return new Plan("OR union " + parts.size() + " parts", result, children);
+    }
+
+    // Indexes hold cents; widen to whole cents so the candidates are a superset.
+    private static BitSet centsRange(RangeIndex index, double min, double max) {
+        return index.between((long) Math.floor(min * 100), (long) Math.ceil(max * 100));
+    }
+
+    private BitSet ordinalsOf(Collection<String> ids) {
+        BitSet bits = new BitSet();
+        for (String id : ids) {
+            int ordinal = products.ordinalOf(id);
+            if (ordinal >= 0) bits.set(ordinal);
+        }
+        return bits;
+    }
+
+    // With a limit, keeps only the best 'limit' matches in a heap instead of
+    // sorting them all.
+    private static List<Product> sortAndLimit(List<Product> matches, Comparator<Product> order, int limit) {
+        if (order == null) {
+            return limit >= 0 && matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        }
+        if (limit < 0 || limit >= matches.size()) {
+            matches.sort(order);
+            return matches;
+        }
+        if (limit == 0) return new ArrayList<>();
+        PriorityQueue<Product> heap = new PriorityQueue<>(limit + 1, order.reversed());
+        for (Product p : matches) {
+            heap.add(p);
+            if (heap.size() > limit) heap.poll();
+        }
+        List<Product> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    private static void render(Plan plan, int depth, StringBuilder sb) {
+        for (int i = 0; i < depth; i++) sb.append("  ");
+        sb.append(plan.description);
+        if (plan.candidates != null) {
+            sb.append(" -> ").append(plan.candidates.cardinality()).append(" candidates");
+        }
+        sb.append("\n");
+        for (Plan child : plan.children) {
+            render(child, depth + 1, sb);
+        }
+    }
+}
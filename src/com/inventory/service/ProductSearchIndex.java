@@ -0,0 +1,89 @@
+package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Trigram index over product id, name and category so keyword searches only
+// verify the products that share every trigram of the keyword.
+public class ProductSearchIndex {
+
+    private final Map<String, String> searchText = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    public void add(Product product) {
+        remove(product.getId());
+        String text = toSearchText(product);
+        searchText.put(product.getId(), text);
+        for (String gram : trigrams(text)) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(product.getId());
+        }
+    }
+
+    public void remove(String productId) {
+        String text = searchText.remove(productId);
+        if (text == null) return;
+        for (String gram : trigrams(text)) {
+            Set<String> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(productId);
+            }
+        }
+    }
+
+    public List<String> search(String keyword) {
+        String lower = keyword.toLowerCase();
+        if (lower.length() < 3) {
+            return scan(lower);
+        }
+
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : trigrams(lower)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return new ArrayList<>();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        List<String> result = new ArrayList<>();
+        for (String id : lists.get(0)) {
+            if (Thread.currentThread().isInterrupted()) break;
+            String text = searchText.get(id);
+            if (text != null && text.contains(lower)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private List<String> scan(String lower) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> e : searchText.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) break;
+            if (e.getValue().contains(lower)) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    // Fields are joined with a separator that never appears in a keyword, so a
+    // match can't straddle two fields.
+    private static String toSearchText(Product p) {
+        return (p.getId() + "\u0000" + p.getName() + "\u0000" + p.getCategory()).toLowerCase();
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            String gram = text.substring(i, i + 3);
+            if (gram.indexOf('\u0000') < 0) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,115 @@
+package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Products by id and by dense ordinal.
+//
+// The id lookup is an open-addressing table with linear probing whose slots
+// hold the Product itself, so a hit is one probe sequence and an equals()
+// with no boxed keys or entry objects. Products are also kept in ordinal
+// order in a PersistentVector, so callers that kept an ordinal skip hashing
+// and values() hands out the current version without copying.
+//
+// Writers are serialized; readers take no lock. The slot table is an
+// AtomicReferenceArray and both structures sit behind volatile fields, so a
+// reader always sees a fully built product, and a reader on a table that was
+// just replaced by a resize still finds everything that was in it.
+public class ProductTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile AtomicReferenceArray<Product> slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private volatile PersistentVector<Product> byOrdinal = PersistentVector.empty();
+
+    public Product get(String id) {
+        AtomicReferenceArray<Product> table = slots;
+        int mask = table.length() - 1;
+        for (int i = spread(id.hashCode()) & mask; ; i = (i + 1) & mask) {
+            Product p = table.get(i);
+            if (p == null) return null;
+            if (p.getId().equals(id)) return p;
+        }
+    }
+
+    public Product get(int ordinal) {
+        PersistentVector<Product> v = byOrdinal;
+        if (ordinal < 0 || ordinal >= v.size()) return null;
+        return v.get(ordinal);
+    }
+
+    // -1 if no product has that id.
+    public int ordinalOf(String id) {
+        Product p = get(id);
+        return p != null ? p.getOrdinal() : -1;
+    }
+
+    public boolean containsKey(String id) {
+        return get(id) != null;
+    }
+
+    public int size() {
+        return byOrdinal.size();
+    }
+
+    // Adds the product, or replaces the one with the same id and takes over
+    // its ordinal. Returns the product replaced, if any.
+    public synchronized Product put(Product product) {
+        AtomicReferenceArray<Product> table = slots;
+        int mask = table.length() - 1;
+        int i = spread(product.getId().hashCode()) & mask;
+        while (true) {
+            Product p = table.get(i);
+            if (p == null) break;
+            if (p.getId().equals(product.getId())) {
+                product.setOrdinal(p.getOrdinal());
+                byOrdinal = byOrdinal.with(p.getOrdinal(), product);
+                table.set(i, product);
+                return p;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int ordinal = byOrdinal.size();
+        product.setOrdinal(ordinal);
+        byOrdinal = byOrdinal.append(product);
+        // Keep the load factor at or below one half.
+        if ((ordinal + 1) * 2 > table.length()) {
+            slots = rehash(table, table.length() * 2, product);
+        } else {
+            table.set(i, product);
+        }
+        return null;
+    }
+
+    // Every product in ordinal order, as an immutable version that later
+    // changes don't affect.
+    public List<Product> values() {
+        return byOrdinal;
+    }
+
+    private static AtomicReferenceArray<Product> rehash(AtomicReferenceArray<Product> old, int capacity,
+                                                       Product extra) {
+        AtomicReferenceArray<Product> table = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j <= old.length(); j++) {
+            Product p = j < old.length() ? old.get(j) : extra;
+            if (p == null) continue;
+            int i = spread(p.getId().hashCode()) & mask;
+            while (table.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            table.set(i, p);
+        }
+        return table;
+    }
+
+    // Ids like "P001" differ only in their last characters; mix the high bits in.
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,84 @@
+package com.inventory.service;
+
+import com.inventory.model.OrderStatus;
+import com.inventory.model.PurchaseOrder;
+import com.inventory.model.PurchaseOrderListener;
+
+import java.time.YearMonth;
+import java.util.*;
+
+// Purchase order spend per supplier, per status and per month, maintained as
+// orders change instead of being recomputed from their lines.
+public class PurchaseOrderStats implements PurchaseOrderListener {
+
+    public static class Totals {
+        private long amountCents;
+        private long units;
+        private long lines;
+        private int orders;
+
+        private Totals() {}
+
+        private Totals(Totals other) {
+            this.amountCents = other.amountCents;
+            this.units = other.units;
+            this.lines = other.lines;
+            this.orders = other.orders;
+        }
+
+        private void apply(PurchaseOrder po, int sign) {
+            amountCents += sign * po.getTotalCents();
+            units += sign * po.getTotalUnits();
+            lines += sign * po.getLineCount();
+            orders += sign;
+        }
+
+        public long getAmountCents() { return amountCents; }
+        public double getAmount() { return amountCents / 100.0; }
+        public long getUnits() { return units; }
+        public long getLines() { return lines; }
+        public int getOrders() { return orders; }
+    }
+
+    private final Map<Integer, Totals> bySupplier = new HashMap<>();
+    private final Map<OrderStatus, Totals> byStatus = new EnumMap<>(OrderStatus.class);
+    private final Map<YearMonth, Totals> byMonth = new TreeMap<>();
+
+    public synchronized void register(PurchaseOrder po) {
+        apply(po, 1);
+        po.setListener(this);
+    }
+
+    // The old figures come out and the new ones go in under one lock, so a
+    // reader never sees the order missing from the totals.
+    @Override
+    public synchronized void change(PurchaseOrder po, Runnable change) {
+        apply(po, -1);
+        try {
+            change.run();
+        } finally {
+            apply(po, 1);
+        }
+    }
+
+    public synchronized Map<Integer, Totals> getBySupplier() { return copy(bySupplier, new HashMap<>()); }
+    public synchronized Map<OrderStatus, Totals> getByStatus() { return copy(byStatus, new EnumMap<>(OrderStatus.class)); }
+    public synchronized Map<YearMonth, Totals> getByMonth() { return copy(byMonth, new TreeMap<>()); }
+
+    private void apply(PurchaseOrder po, int sign) {
+        if (po.getSupplier() != null) {
+            bySupplier.computeIfAbsent(po.getSupplier().getId(), k -> new Totals()).apply(po, sign);
+        }
+        byStatus.computeIfAbsent(po.getStatus(), k -> new Totals()).apply(po, sign);
+        byMonth.computeIfAbsent(YearMonth.from(po.getCreatedDate()), k -> new Totals()).apply(po, sign);
+    }
+
+    private static <K> Map<K, Totals> copy(Map<K, Totals> source, Map<K, Totals> target) {
+        for (Map.Entry<K, Totals> e : source.entrySet()) {
+            if (e.getValue().orders > 0) {
+                target.put(e.getKey(), new Totals(e.getValue()));
+            }
+        }
+        return target;
+    }
+}
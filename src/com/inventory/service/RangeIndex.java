@@ -0,0 +1,176 @@
+package com.inventory.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// Sorted index from a long value to product ordinals, for range queries.
+//
+// Entries are packed into one primitive long, value in the high 40 bits and
+// ordinal in the low 24, so ties on value order by ordinal and every entry is
+// unique. Entries live in sorted blocks of up to BLOCK_SIZE longs (a two-level
+// B+-tree): finding a position is a binary search over block first keys and
+// then within the block, and inserts and removes shift at most one block.
+// A range query is O(log n + k).
+public class RangeIndex {
+
+    static final int BLOCK_SIZE = 512;
+    private static final int ORDINAL_BITS = 24;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+    private static final long MAX_VALUE = (1L << (63 - ORDINAL_BITS)) - 1;
+    private static final long MIN_VALUE = -MAX_VALUE;
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private static final class Block {
+        long[] keys = new long[BLOCK_SIZE];
+        int size;
+    }
+
+    private final String name;
+    private final List<Block> blocks = new ArrayList<>();
+    private long[] keyByOrdinal = new long[0];
+    private int size;
+
+    public RangeIndex(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Sets (or moves) the product's entry to 'value'.
+    public synchronized void put(int ordinal, long value) {
+        if (ordinal > ORDINAL_MASK) {
+            throw new IllegalStateException("Too many products for index " + name);
+        }
+        long key = (clamp(value) << ORDINAL_BITS) | ordinal;
+        ensureCapacity(ordinal);
+        long old = keyByOrdinal[ordinal];
+        if (old == key) return;
+        if (old != ABSENT) delete(old);
+        insert(key);
+        keyByOrdinal[ordinal] = key;
+    }
+
+    public synchronized void remove(int ordinal) {
+        if (ordinal >= keyByOrdinal.length || keyByOrdinal[ordinal] == ABSENT) return;
+        delete(keyByOrdinal[ordinal]);
+        keyByOrdinal[ordinal] = ABSENT;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Ordinals whose value is in [min, max].
+    public synchronized BitSet between(long min, long max) {
+        BitSet result = new BitSet();
+        if (min > max || size == 0) return result;
+        long from = clamp(min) << ORDINAL_BITS;
+        long to = (clamp(max) << ORDINAL_BITS) | ORDINAL_MASK;
+        int b = blockFor(from);
+        int i = Math.max(0, lowerBound(blocks.get(b), from));
+        for (; b < blocks.size(); b++, i = 0) {
+            Block block = blocks.get(b);
+            for (; i < block.size; i++) {
+                long key = block.keys[i];
+                if (key > to) return result;
+                result.set((int) (key & ORDINAL_MASK));
+            }
+        }
+        return result;
+    }
+
+    // Visits ordinals from the lowest value up until the visitor returns false.
+    public synchronized void ascending(IntPredicate visitor) {
+        for (Block block : blocks) {
+            for (int i = 0; i < block.size; i++) {
+                if (!visitor.test((int) (block.keys[i] & ORDINAL_MASK))) return;
+            }
+        }
+    }
+
+    // Visits ordinals from the highest value down until the visitor returns false.
+    public synchronized void descending(IntPredicate visitor) {
+        for (int b = blocks.size() - 1; b >= 0; b--) {
+            Block block = blocks.get(b);
+            for (int i = block.size - 1; i >= 0; i--) {
+                if (!visitor.test((int) (block.keys[i] & ORDINAL_MASK))) return;
+            }
+        }
+    }
+
+    // Ordinals whose value is below 'limit'.
+    public BitSet below(long limit) {
+        return limit == Long.MIN_VALUE ? new BitSet() : between(MIN_VALUE, limit - 1);
+    }
+
+    private void insert(long key) {
+        if (blocks.isEmpty()) blocks.add(new Block());
+        int b = blockFor(key);
+        Block block = blocks.get(b);
+        int pos = lowerBound(block, key);
+        if (block.size == BLOCK_SIZE) {
+            Block right = new Block();
+            int half = BLOCK_SIZE / 2;
+            System.arraycopy(block.keys, half, right.keys, 0, BLOCK_SIZE - half);
+            right.size = BLOCK_SIZE - half;
+            block.size = half;
+            blocks.add(b + 1, right);
+            if (pos > half) {
+                block = right;
+                pos -= half;
+            }
+        }
+        System.arraycopy(block.keys, pos, block.keys, pos + 1, block.size - pos);
+        block.keys[pos] = key;
+        block.size++;
+        size++;
+    }
+
+    private void delete(long key) {
+        int b = blockFor(key);
+        Block block = blocks.get(b);
+        int pos = lowerBound(block, key);
+        if (pos >= block.size || block.keys[pos] != key) return;
+        System.arraycopy(block.keys, pos + 1, block.keys, pos, block.size - pos - 1);
+        block.size--;
+        size--;
+        if (block.size == 0 && blocks.size() > 1) {
+            blocks.remove(b);
+        }
+    }
+
+    // Last block whose first key is <= key (or the first block).
+    private int blockFor(long key) {
+        int lo = 0;
+        int hi = blocks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            Block block = blocks.get(mid);
+            if (block.size > 0 && block.keys[0] <= key) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private static int lowerBound(Block block, long key) {
+        int i = Arrays.binarySearch(block.keys, 0, block.size, key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < keyByOrdinal.length) return;
+        int old = keyByOrdinal.length;
+        int n = Math.max(16, Math.max(ordinal + 1, old * 2));
+        keyByOrdinal = Arrays.copyOf(keyByOrdinal, n);
+        Arrays.fill(keyByOrdinal, old, n, ABSENT);
+    }
+
+    private static long clamp(long value) {
+        return Math.max(MIN_VALUE, Math.min(MAX_VALUE, value));
+    }
+}
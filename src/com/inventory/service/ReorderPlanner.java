@@ -0,0 +1,92 @@
+package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically turns low-stock products into draft purchase orders, one per
+// supplier. Planning runs on its own thread and takes products from the
+// service's queue of low-stock products whose stock changed, no more than
+// MAX_PRODUCTS_PER_CYCLE at a time, so a cycle's work follows what changed
+// rather than the size of the catalogue. The orders themselves are created
+// on applyExecutor (the Swing thread in the app) so they never race the UI.
+//
+// Drafts live in memory only. They are written to the database when they
+// are received, so drafts still open at shutdown are lost.
+public class ReorderPlanner {
+
+    public static final int MAX_PRODUCTS_PER_CYCLE = 500;
+    public static final int COVER_DAYS = 14;
+
+    private final InventoryService service;
+    private final Executor applyExecutor;
+    private ScheduledExecutorService scheduler;
+
+    public ReorderPlanner(InventoryService service, Executor applyExecutor) {
+        this.service = service;
+        this.applyExecutor = applyExecutor;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reorder-planner");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runCycle, period, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void runCycle() {
+        try {
+            Map<Integer, Map<String, Integer>> plan = plan(LocalDate.now());
+            if (!plan.isEmpty()) {
+                applyExecutor.execute(() -> service.createReorderDrafts(plan));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // supplierId -> (productId -> quantity to order)
+    // Products left in the queue wait for the next cycle.
+    Map<Integer, Map<String, Integer>> plan(LocalDate today) {
+        Map<Integer, Map<String, Integer>> plan = new TreeMap<>();
+        for (int i = 0; i < MAX_PRODUCTS_PER_CYCLE; i++) {
+            Product queued = service.pollReorderCandidate();
+            if (queued == null) break;
+            // The product may have been replaced since it was queued.
+            Product p = service.getProductByOrdinal(queued.getOrdinal());
+            if (p == null || !p.isLowStock()) continue;
+            Integer supplierId = service.getPreferredSupplierId(p.getId());
+            if (supplierId == null) continue;
+
+            int qty = orderQuantity(p, service.getDemandForecaster().dailyDemand(p.getOrdinal(), today),
+                    service.getQuantityOnOrder(p.getId()));
+            if (qty > 0) {
+                plan.computeIfAbsent(supplierId, k -> new LinkedHashMap<>()).put(p.getId(), qty);
+            }
+        }
+        return plan;
+    }
+
+    // Enough to get back above the reorder level and cover COVER_DAYS of
+    // forecast demand, less whatever is already on order.
+    static int orderQuantity(Product p, double unitsPerDay, int onOrder) {
+        int target = Math.max(p.getReorderLevel() * 2,
+                p.getReorderLevel() + (int) Math.ceil(unitsPerDay * COVER_DAYS));
+        return target - p.getStockLevel() - onOrder;
+    }
+}
@@ -0,0 +1,170 @@
+package com.inventory.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+// Writes report text as UTF-8 to a stream, a line at a time.
+//
+// Numbers go straight into the output buffer as digits, without
+// String.format or intermediate Strings; fixed-point values come out as %.nf
+// would print them. The writer also notes the byte offset where every PAGE_LINES
+// lines start, so a finished report file can be shown a page at a time
+// without reading the rest of it.
+public class ReportWriter implements Closeable {
+
+    public static final int PAGE_LINES = 500;
+
+    private static final long[] POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[1 << 16];
+    private final char[] digits = new char[20];
+    private int pos;
+    private long bytesWritten;
+    private long lines;
+    private long[] pageOffsets = new long[8];
+    private int pages = 1; // page 0 starts at offset 0
+
+    public ReportWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public ReportWriter text(String s) throws IOException {
+        if (s == null) s = "";
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                codePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                codePoint(c);
+            }
+        }
+        return this;
+    }
+
+    public ReportWriter text(char c) throws IOException {
+        codePoint(c);
+        return this;
+    }
+
+    public ReportWriter number(long v) throws IOException {
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) return text(Long.toString(v));
+            ascii('-');
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (n > 0) ascii(digits[--n]);
+        return this;
+    }
+
+    // Fixed point with 0 to 6 decimals. Like %.nf, this rounds the shortest
+    // decimal form of v half up, so values that sit near a half in binary
+    // (1.005 is really 1.00499...) go through BigDecimal.
+    public ReportWriter number(double v, int decimals) throws IOException {
+        if (decimals < 0 || decimals >= POWERS.length) {
+            throw new IllegalArgumentException("Decimals must be 0 to " + (POWERS.length - 1));
+        }
+        if (Double.isNaN(v) || Double.isInfinite(v)) return text(Double.toString(v));
+        long scale = POWERS[decimals];
+        double scaled = Math.abs(v) * scale;
+        if (scaled >= 1e15 || Math.abs(scaled - Math.floor(scaled) - 0.5) <= 16 * Math.ulp(scaled)) {
+            return text(new BigDecimal(Double.toString(v)).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+        }
+        long units = Math.round(scaled);
+        if (Double.doubleToRawLongBits(v) < 0) ascii('-');
+        number(units / scale);
+        if (decimals > 0) {
+            ascii('.');
+            long frac = units % scale;
+            for (long p = scale / 10; p > 0; p /= 10) {
+                ascii((char) ('0' + frac / p % 10));
+            }
+        }
+        return this;
+    }
+
+    public ReportWriter newLine() throws IOException {
+        ascii('\n');
+        if (++lines % PAGE_LINES == 0) {
+            if (pages == pageOffsets.length) pageOffsets = Arrays.copyOf(pageOffsets, pages * 2);
+            pageOffsets[pages++] = bytesWritten + pos;
+        }
+        return this;
+    }
+
+    public ReportWriter line(String s) throws IOException {
+        return text(s).newLine();
+    }
+
+    public long getLineCount() {
+        return lines;
+    }
+
+    public long getByteCount() {
+        return bytesWritten + pos;
+    }
+
+    // Byte offset of the first line of each page; an exact multiple of
+    // PAGE_LINES leaves an empty last page, which is dropped.
+    public long[] getPageOffsets() {
+        int n = pages;
+        if (n > 1 && pageOffsets[n - 1] == getByteCount()) n--;
+        return Arrays.copyOf(pageOffsets, n);
+    }
+
+    public void flush() throws IOException {
+        out.write(buf, 0, pos);
+        bytesWritten += pos;
+        pos = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ascii(char c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) c;
+    }
+
+    private void codePoint(int c) throws IOException {
+        if (pos + 4 > buf.length) drain();
+        if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) c = '?'; // unpaired
+        if (c < 0x80) {
+            buf[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | c >> 6);
+            buf[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if (c < 0x10000) {
+            buf[pos++] = (byte) (0xE0 | c >> 12);
+            buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buf[pos++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            buf[pos++] = (byte) (0xF0 | c >> 18);
+            buf[pos++] = (byte) (0x80 | c >> 12 & 0x3F);
+            buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buf[pos++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        bytesWritten += pos;
+        pos = 0;
+    }
+}
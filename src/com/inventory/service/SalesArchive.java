@@ -0,0 +1,501 @@
+package com.inventory.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Sales moved out of the Sales table by the retention policy.
+//
+// Each archiving run writes one segment file, named after the first and last
+// sale date and the highest sale id it holds
+// (sales-2024-01-03_2024-03-31_1234.seg). The file is written under a
+// temporary name and moved into place once complete. A scan opens only files
+// whose date range overlaps the one asked for. The highest id across the
+// file names tells a later run which rows are already archived, so a crash
+// between writing a file and deleting its rows never archives a row twice.
+//
+// A segment is columnar. Rows are grouped into blocks of BLOCK_ROWS, and each
+// block stores its columns one after another:
+//   id, epoch day      zigzag varint deltas from the previous row
+//   product            varint code into the file's product id dictionary
+//   quantity           varint
+//   sale, cost price   varint codes into the file's price dictionary
+// The footer holds both dictionaries and a directory with each block's
+// offset, row count and min/max id and day, so a date-range scan skips
+// blocks without touching them. Scans map the file and decode the columns
+// straight out of the mapping into reused arrays, only for the columns a
+// scan actually reads.
+public class SalesArchive {
+
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int MAGIC = 0x53414331; // "SAC1"
+    private static final String PREFIX = "sales-";
+    private static final String SUFFIX = ".seg";
+    private static final String TEMP_PREFIX = "archive";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int ID = 0, DAY = 1, PRODUCT = 2, QUANTITY = 3, SALE_PRICE = 4, COST_PRICE = 5;
+    private static final int COLUMNS = 6;
+
+    public static final class Row {
+        private final int id;
+        private final String productId;
+        private final int quantity;
+        private final double salePrice;
+        private final double costPrice;
+        private final LocalDate date;
+
+        public Row(int id, String productId, int quantity, double salePrice, double costPrice, LocalDate date) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.salePrice = salePrice;
+            this.costPrice = costPrice;
+            this.date = date;
+        }
+
+        public int getId() { return id; }
+        public String getProductId() { return productId; }
+        public int getQuantity() { return quantity; }
+        public double getSalePrice() { return salePrice; }
+        public double getCostPrice() { return costPrice; }
+        public LocalDate getDate() { return date; }
+    }
+
+    // One block of a segment. A column is decoded the first time one of its
+    // values is read, so a scan pays only for the columns it uses. The arrays
+    // are reused for the next block; a visitor must copy anything it keeps.
+    public static final class Block {
+        private Segment segment;
+        private int index;
+        private int size;
+        private int decoded;
+        private final int[] starts = new int[COLUMNS];
+        private final int[] ids = new int[BLOCK_ROWS];
+        private final int[] days = new int[BLOCK_ROWS];
+        private final int[] productCodes = new int[BLOCK_ROWS];
+        private final int[] quantities = new int[BLOCK_ROWS];
+        private final double[] salePrices = new double[BLOCK_ROWS];
+        private final double[] costPrices = new double[BLOCK_ROWS];
+
+        public int size() { return size; }
+
+        public int getId(int row) {
+            if ((decoded & 1 << ID) == 0) decode(ID);
+            return ids[row];
+        }
+
+        public long getEpochDay(int row) {
+            if ((decoded & 1 << DAY) == 0) decode(DAY);
+            return days[row];
+        }
+
+        public int getProductCode(int row) {
+            if ((decoded & 1 << PRODUCT) == 0) decode(PRODUCT);
+            return productCodes[row];
+        }
+
+        public String getProductId(int row) {
+            return segment.products[getProductCode(row)];
+        }
+
+        public int getQuantity(int row) {
+            if ((decoded & 1 << QUANTITY) == 0) decode(QUANTITY);
+            return quantities[row];
+        }
+
+        public double getSalePrice(int row) {
+            if ((decoded & 1 << SALE_PRICE) == 0) decode(SALE_PRICE);
+            return salePrices[row];
+        }
+
+        public double getCostPrice(int row) {
+            if ((decoded & 1 << COST_PRICE) == 0) decode(COST_PRICE);
+            return costPrices[row];
+        }
+
+        // Product ids by code for the file this block came from.
+        public String[] getProducts() { return segment.products; }
+
+        private void load(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+            this.size = segment.rowCounts[index];
+            this.decoded = 0;
+            int pos = (int) segment.offsets[index];
+            int start = pos + 4 * COLUMNS;
+            for (int c = 0; c < COLUMNS; c++) {
+                starts[c] = start;
+                start += segment.data.getInt(pos + 4 * c);
+            }
+        }
+
+        private void decode(int column) {
+            switch (column) {
+                case ID:         segment.decodeDeltas(starts[ID], size, segment.minIds[index], ids); break;
+                case DAY:        segment.decodeDeltas(starts[DAY], size, segment.minDays[index], days); break;
+                case PRODUCT:    segment.decodeVarints(starts[PRODUCT], size, productCodes); break;
+                case QUANTITY:   segment.decodeVarints(starts[QUANTITY], size, quantities); break;
+                case SALE_PRICE: segment.decodePrices(starts[SALE_PRICE], size, salePrices); break;
+                default:         segment.decodePrices(starts[COST_PRICE], size, costPrices); break;
+            }
+            decoded |= 1 << column;
+        }
+    }
+
+    public interface BlockVisitor {
+        void visit(Block block);
+    }
+
+    // Grows as varints are appended; one per column while a block is encoded.
+    private static final class ColumnBuffer {
+        byte[] bytes = new byte[BLOCK_ROWS * 2];
+        int size;
+
+        void putVarint(long v) {
+            if (size + 10 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void putZigzag(long v) {
+            putVarint((v << 1) ^ (v >> 63));
+        }
+    }
+
+    // Streams rows into a new segment; nothing is visible until commit.
+    public final class Writer implements Closeable {
+        private final Path tmp;
+        private final FileChannel channel;
+        private final Map<String, Integer> productCodes = new HashMap<>();
+        private final List<String> products = new ArrayList<>();
+        private final Map<Double, Integer> priceCodes = new HashMap<>();
+        private final List<Double> prices = new ArrayList<>();
+        private final ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        private final DataOutputStream directory = new DataOutputStream(directoryBytes);
+        private final ColumnBuffer[] columns = new ColumnBuffer[COLUMNS];
+
+        private final int[] ids = new int[BLOCK_ROWS];
+        private final int[] days = new int[BLOCK_ROWS];
+        private final int[] rowProducts = new int[BLOCK_ROWS];
+        private final int[] quantities = new int[BLOCK_ROWS];
+        private final int[] salePrices = new int[BLOCK_ROWS];
+        private final int[] costPrices = new int[BLOCK_ROWS];
+        private int pending;
+
+        private long position;
+        private int blockCount;
+        private LocalDate first;
+        private LocalDate last;
+        private int maxId;
+        private int count;
+        private boolean done;
+
+        private Writer() throws IOException {
+            tmp = Files.createTempFile(SalesArchive.this.directory, TEMP_PREFIX, TEMP_SUFFIX);
+            channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+            for (int i = 0; i < COLUMNS; i++) columns[i] = new ColumnBuffer();
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(MAGIC);
+            header.flip();
+            write(header);
+        }
+
+        public void add(Row row) throws IOException {
+            ids[pending] = row.id;
+            days[pending] = (int) row.date.toEpochDay();
+            rowProducts[pending] = productCodes.computeIfAbsent(row.productId, id -> {
+                products.add(id);
+                return products.size() - 1;
+            });
+            quantities[pending] = row.quantity;
+            salePrices[pending] = priceCode(row.salePrice);
+            costPrices[pending] = priceCode(row.costPrice);
+            if (first == null || row.date.isBefore(first)) first = row.date;
+            if (last == null || row.date.isAfter(last)) last = row.date;
+            maxId = Math.max(maxId, row.id);
+            count++;
+            if (++pending == BLOCK_ROWS) flushBlock();
+        }
+
+        public int getCount() { return count; }
+
+        // Publishes the file; an empty run leaves nothing behind.
+        public void commit() throws IOException {
+            if (pending > 0) flushBlock();
+            done = true;
+            if (count == 0) {
+                channel.close();
+                Files.deleteIfExists(tmp);
+                return;
+            }
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(products.size());
+            for (String p : products) footer.writeUTF(p);
+            footer.writeInt(prices.size());
+            for (double p : prices) footer.writeDouble(p);
+            footer.writeInt(blockCount);
+            directoryBytes.writeTo(footer);
+            footer.writeLong(position);
+            footer.writeInt(MAGIC);
+            write(ByteBuffer.wrap(footerBytes.toByteArray()));
+            channel.force(true);
+            channel.close();
+
+            Path target = SalesArchive.this.directory.resolve(PREFIX + first + "_" + last + "_" + maxId + SUFFIX);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (SalesArchive.this) {
+                archivedThroughId = Math.max(archivedThroughId, maxId);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (done) return;
+            channel.close();
+            Files.deleteIfExists(tmp);
+        }
+
+        private int priceCode(double price) {
+            return priceCodes.computeIfAbsent(price, p -> {
+                prices.add(p);
+                return prices.size() - 1;
+            });
+        }
+
+        private void flushBlock() throws IOException {
+            int minId = Integer.MAX_VALUE, maxBlockId = Integer.MIN_VALUE;
+            int minDay = Integer.MAX_VALUE, maxDay = Integer.MIN_VALUE;
+            for (int i = 0; i < pending; i++) {
+                minId = Math.min(minId, ids[i]);
+                maxBlockId = Math.max(maxBlockId, ids[i]);
+                minDay = Math.min(minDay, days[i]);
+                maxDay = Math.max(maxDay, days[i]);
+            }
+            for (ColumnBuffer c : columns) c.size = 0;
+            long prevId = minId, prevDay = minDay;
+            for (int i = 0; i < pending; i++) {
+                columns[ID].putZigzag(ids[i] - prevId);
+                prevId = ids[i];
+                columns[DAY].putZigzag(days[i] - prevDay);
+                prevDay = days[i];
+                columns[PRODUCT].putVarint(rowProducts[i]);
+                columns[QUANTITY].putVarint(quantities[i]);
+                columns[SALE_PRICE].putVarint(salePrices[i]);
+                columns[COST_PRICE].putVarint(costPrices[i]);
+            }
+
+            ByteBuffer lengths = ByteBuffer.allocate(4 * COLUMNS);
+            for (ColumnBuffer c : columns) lengths.putInt(c.size);
+            lengths.flip();
+            long offset = position;
+            write(lengths);
+            for (ColumnBuffer c : columns) write(ByteBuffer.wrap(c.bytes, 0, c.size));
+
+            directory.writeLong(offset);
+            directory.writeInt(pending);
+            directory.writeInt(minId);
+            directory.writeInt(maxBlockId);
+            directory.writeInt(minDay);
+            directory.writeInt(maxDay);
+            blockCount++;
+            pending = 0;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+
+    // A mapped segment with its footer parsed.
+    private static final class Segment {
+        final MappedByteBuffer data;
+        final String[] products;
+        final double[] prices;
+        final long[] offsets;
+        final int[] rowCounts;
+        final int[] minIds;
+        final int[] minDays;
+        final int[] maxDays;
+
+        Segment(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            int end = data.limit();
+            if (end < 16 || data.getInt(0) != MAGIC || data.getInt(end - 4) != MAGIC) {
+                throw new IOException("Not a sales archive segment: " + file);
+            }
+            int footerStart = (int) data.getLong(end - 12);
+            byte[] footerBytes = new byte[end - 12 - footerStart];
+            data.get(footerStart, footerBytes);
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes));
+            products = new String[footer.readInt()];
+            for (int i = 0; i < products.length; i++) products[i] = footer.readUTF();
+            prices = new double[footer.readInt()];
+            for (int i = 0; i < prices.length; i++) prices[i] = footer.readDouble();
+            int blocks = footer.readInt();
+            offsets = new long[blocks];
+            rowCounts = new int[blocks];
+            minIds = new int[blocks];
+            minDays = new int[blocks];
+            maxDays = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = footer.readLong();
+                rowCounts[b] = footer.readInt();
+                minIds[b] = footer.readInt();
+                footer.readInt(); // max id
+                minDays[b] = footer.readInt();
+                maxDays[b] = footer.readInt();
+            }
+        }
+
+        // Decodes blocks whose days overlap [from, to]; returns how many.
+        int scan(long from, long to, Block block, BlockVisitor visitor) {
+            int visited = 0;
+            for (int b = 0; b < offsets.length; b++) {
+                if (maxDays[b] < from || minDays[b] > to) continue;
+                block.load(this, b);
+                visitor.visit(block);
+                visited++;
+            }
+            return visited;
+        }
+
+        private void decodeDeltas(int pos, int n, long base, int[] out) {
+            long prev = base;
+            for (int i = 0; i < n; i++) {
+                long v = 0;
+                int shift = 0;
+                byte x;
+                do {
+                    x = data.get(pos++);
+                    v |= (long) (x & 0x7F) << shift;
+                    shift += 7;
+                } while (x < 0);
+                prev += (v >>> 1) ^ -(v & 1);
+                out[i] = (int) prev;
+            }
+        }
+
+        private void decodeVarints(int pos, int n, int[] out) {
+            for (int i = 0; i < n; i++) {
+                int v = 0;
+                int shift = 0;
+                byte x;
+                do {
+                    x = data.get(pos++);
+                    v |= (x & 0x7F) << shift;
+                    shift += 7;
+                } while (x < 0);
+                out[i] = v;
+            }
+        }
+
+        private void decodePrices(int pos, int n, double[] out) {
+            for (int i = 0; i < n; i++) {
+                int v = 0;
+                int shift = 0;
+                byte x;
+                do {
+                    x = data.get(pos++);
+                    v |= (x & 0x7F) << shift;
+                    shift += 7;
+                } while (x < 0);
+                out[i] = prices[v];
+            }
+        }
+    }
+
+    private final Path directory;
+    private int archivedThroughId;
+
+    // Temp files left by a writer that crashed before commit or close are
+    // deleted; no writer can be running yet.
+    public SalesArchive(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, TEMP_PREFIX + "*" + TEMP_SUFFIX)) {
+            for (Path p : ds) {
+                Files.deleteIfExists(p);
+            }
+        }
+        for (Path file : files()) {
+            archivedThroughId = Math.max(archivedThroughId, maxIdOf(file));
+        }
+    }
+
+    public Writer newWriter() throws IOException {
+        return new Writer();
+    }
+
+    // Every sale with an id up to this one is in some archive file.
+    public synchronized int getArchivedThroughId() {
+        return archivedThroughId;
+    }
+
+    public List<Path> files() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : ds) {
+                result.add(p);
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    // Archived sales dated from..to inclusive, one row at a time.
+    public void scan(LocalDate from, LocalDate to, Consumer<Row> consumer) throws IOException {
+        long lo = from.toEpochDay(), hi = to.toEpochDay();
+        scanBlocks(from, to, block -> {
+            for (int i = 0; i < block.size(); i++) {
+                long day = block.getEpochDay(i);
+                if (day < lo || day > hi) continue;
+                consumer.accept(new Row(block.getId(i), block.getProductId(i), block.getQuantity(i),
+                        block.getSalePrice(i), block.getCostPrice(i), LocalDate.ofEpochDay(day)));
+            }
+        });
+    }
+
+    // Blocks that may hold sales dated from..to. Files and blocks wholly
+    // outside the range are skipped, but a visited block can still hold rows
+    // outside it, so visitors check getEpochDay.
+    public void scanBlocks(LocalDate from, LocalDate to, BlockVisitor visitor) throws IOException {
+        Block block = new Block();
+        for (Path file : files()) {
+            String[] parts = nameParts(file);
+            if (LocalDate.parse(parts[1]).isBefore(from) || LocalDate.parse(parts[0]).isAfter(to)) continue;
+            new Segment(file).scan(from.toEpochDay(), to.toEpochDay(), block, visitor);
+        }
+    }
+
+    // Every block in one file.
+    public static void read(Path file, BlockVisitor visitor) throws IOException {
+        new Segment(file).scan(Long.MIN_VALUE, Long.MAX_VALUE, new Block(), visitor);
+    }
+
+    // {first date, last date, max id}
+    private static String[] nameParts(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(PREFIX.length(), name.length() - SUFFIX.length()).split("_");
+    }
+
+    private static int maxIdOf(Path file) {
+        return Integer.parseInt(nameParts(file)[2]);
+    }
+}
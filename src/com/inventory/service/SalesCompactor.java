@@ -0,0 +1,53 @@
+package com.inventory.service;
+
+import com.inventory.db.DatabaseHelper;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically moves sales past the retention window into the archive. The
+// database and file work runs on the compactor's own thread; only dropping
+// the in-memory detail runs on applyExecutor (the Swing thread in the app),
+// and only after the rows are safely archived.
+public class SalesCompactor {
+
+    private final InventoryService service;
+    private final Executor applyExecutor;
+    private ScheduledExecutorService scheduler;
+
+    public SalesCompactor(InventoryService service, Executor applyExecutor) {
+        this.service = service;
+        this.applyExecutor = applyExecutor;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::compact, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void compact() {
+        try {
+            DatabaseHelper.archiveOldSales(service);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        applyExecutor.execute(() -> service.compactSales(today));
+    }
+}
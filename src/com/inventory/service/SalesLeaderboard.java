@@ -0,0 +1,157 @@
+package com.inventory.service;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// Live best-seller and slow-mover rankings, fed one sale at a time.
+//
+// Each rolling window (today, last 7 days) keeps exact units per product in
+// one sparse bucket per day plus a running total per product ordinal. The
+// totals are mirrored in a RangeIndex, so the top or bottom N is a walk of N
+// entries from either end. When the day moves on, the buckets that fall out
+// of a window are subtracted from its totals. A Space-Saving sketch tracks
+// heavy hitters since startup in bounded memory for catalogues too large to
+// rank exactly.
+public class SalesLeaderboard {
+
+    public static final int WEEK_DAYS = 7;
+    public static final int SKETCH_CAPACITY = 1024;
+
+    // Units sold per ordinal on one day; open addressing, grows as needed.
+    private static final class DayBucket {
+        int[] ordinals = new int[16];
+        long[] units = new long[16];
+        boolean[] used = new boolean[16];
+        int size;
+
+        void add(int ordinal, long qty) {
+            if ((size + 1) * 2 > used.length) grow();
+            int mask = used.length - 1;
+            int i = (ordinal * 0x9E3779B9) >>> 16 & mask;
+            while (used[i] && ordinals[i] != ordinal) i = (i + 1) & mask;
+            if (!used[i]) {
+                used[i] = true;
+                ordinals[i] = ordinal;
+                size++;
+            }
+            units[i] += qty;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+            Arrays.fill(units, 0);
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldOrdinals = ordinals;
+            long[] oldUnits = units;
+            boolean[] oldUsed = used;
+            int n = used.length * 2;
+            ordinals = new int[n];
+            units = new long[n];
+            used = new boolean[n];
+            size = 0;
+            for (int j = 0; j < oldUsed.length; j++) {
+                if (oldUsed[j]) add(oldOrdinals[j], oldUnits[j]);
+            }
+        }
+    }
+
+    static final class RollingWindow {
+        private final int days;
+        private final DayBucket[] buckets;
+        private long currentDay = Long.MIN_VALUE;
+        private long[] totals = new long[16];
+        private final RangeIndex ranking;
+
+        RollingWindow(String name, int days) {
+            this.days = days;
+            this.buckets = new DayBucket[days];
+            for (int i = 0; i < days; i++) buckets[i] = new DayBucket();
+            this.ranking = new RangeIndex(name);
+        }
+
+        synchronized void register(int ordinal) {
+            ensureCapacity(ordinal);
+            ranking.put(ordinal, totals[ordinal]);
+        }
+
+        synchronized void add(int ordinal, long day, long qty) {
+            advanceTo(day);
+            if (day <= currentDay - days) return; // already outside the window
+            DayBucket bucket = buckets[(int) Math.floorMod(day, (long) days)];
+            bucket.add(ordinal, qty);
+            ensureCapacity(ordinal);
+            totals[ordinal] += qty;
+            ranking.put(ordinal, totals[ordinal]);
+        }
+
+        synchronized void advanceTo(long day) {
+            if (currentDay == Long.MIN_VALUE) {
+                currentDay = day;
+                return;
+            }
+            if (day <= currentDay) return;
+            long from = Math.max(currentDay + 1, day - days + 1);
+            for (long d = from; d <= day; d++) {
+                DayBucket bucket = buckets[(int) Math.floorMod(d, (long) days)];
+                expire(bucket);
+                bucket.clear();
+            }
+            currentDay = day;
+        }
+
+        synchronized long unitsOf(int ordinal) {
+            return ordinal < totals.length ? totals[ordinal] : 0;
+        }
+
+        // Holds the window lock so a visitor may call unitsOf.
+        synchronized void highest(IntPredicate visitor) { ranking.descending(visitor); }
+        synchronized void lowest(IntPredicate visitor) { ranking.ascending(visitor); }
+
+        private void expire(DayBucket bucket) {
+            for (int i = 0; i < bucket.used.length; i++) {
+                if (!bucket.used[i]) continue;
+                int ordinal = bucket.ordinals[i];
+                totals[ordinal] -= bucket.units[i];
+                ranking.put(ordinal, totals[ordinal]);
+            }
+        }
+
+        private void ensureCapacity(int ordinal) {
+            if (ordinal >= totals.length) {
+                totals = Arrays.copyOf(totals, Math.max(ordinal + 1, totals.length * 2));
+            }
+        }
+    }
+
+    private final RollingWindow today = new RollingWindow("units today", 1);
+    private final RollingWindow week = new RollingWindow("units this week", WEEK_DAYS);
+    private final SpaceSavingSketch sinceStartup = new SpaceSavingSketch(SKETCH_CAPACITY);
+
+    public void register(int ordinal) {
+        today.register(ordinal);
+        week.register(ordinal);
+    }
+
+    public void record(int ordinal, long epochDay, int quantity) {
+        today.add(ordinal, epochDay, quantity);
+        week.add(ordinal, epochDay, quantity);
+        sinceStartup.add(ordinal, quantity);
+    }
+
+    RollingWindow today(long epochDay) {
+        today.advanceTo(epochDay);
+        return today;
+    }
+
+    RollingWindow week(long epochDay) {
+        week.advanceTo(epochDay);
+        return week;
+    }
+
+    SpaceSavingSketch sketch() {
+        return sinceStartup;
+    }
+}
@@ -0,0 +1,238 @@
+package com.inventory.service;
+
+import com.inventory.model.SalesTotals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Sales pre-aggregated into hour, day and month buckets.
+//
+// Within a bucket, totals are kept per (product ordinal, seller, category)
+// cell plus one total for the whole bucket, so a date-range question reads a
+// handful of buckets instead of every sale. Range queries use month buckets
+// for whole months and day buckets only for the ragged ends. Bucket numbers
+// are epoch hours, epoch days and months since year 0, all in local time.
+public class SalesRollups {
+
+    public enum Granularity { HOUR, DAY, MONTH }
+
+    public enum Dimension { PRODUCT, SELLER, CATEGORY }
+
+    public static final class Cell {
+        private final int ordinal;
+        private final int sellerId;
+        private final int categoryCode;
+        private final SalesTotals totals = new SalesTotals();
+
+        Cell(int ordinal, int sellerId, int categoryCode) {
+            this.ordinal = ordinal;
+            this.sellerId = sellerId;
+            this.categoryCode = categoryCode;
+        }
+
+        public int getOrdinal() { return ordinal; }
+        public int getSellerId() { return sellerId; }
+        public int getCategoryCode() { return categoryCode; }
+        public SalesTotals getTotals() { return totals; }
+
+        int key(Dimension d) {
+            switch (d) {
+                case PRODUCT: return ordinal;
+                case SELLER:  return sellerId;
+                default:      return categoryCode;
+            }
+        }
+    }
+
+    public interface CellVisitor {
+        void visit(Granularity granularity, long bucket, Cell cell);
+    }
+
+    private static final class Bucket {
+        final Map<Long, Cell> cells = new HashMap<>();
+        final SalesTotals total = new SalesTotals();
+
+        synchronized void add(int ordinal, int sellerId, int categoryCode,
+                              long saleCount, long units, double revenue, double profit) {
+            long key = ((long) ordinal << 40) | ((long) (sellerId & 0xFFFFFF) << 16) | (categoryCode & 0xFFFF);
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell(ordinal, sellerId, categoryCode);
+                cells.put(key, cell);
+            }
+            cell.totals.add(saleCount, units, revenue, profit);
+            total.add(saleCount, units, revenue, profit);
+        }
+    }
+
+    private final List<ConcurrentSkipListMap<Long, Bucket>> levels = new ArrayList<>();
+
+    public SalesRollups() {
+        for (int i = 0; i < Granularity.values().length; i++) {
+            levels.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public static long bucketOf(Granularity g, LocalDateTime at) {
+        switch (g) {
+            case HOUR:  return at.toEpochSecond(ZoneOffset.UTC) / 3600;
+            case DAY:   return at.toLocalDate().toEpochDay();
+            default:    return at.getYear() * 12L + at.getMonthValue() - 1;
+        }
+    }
+
+    public static LocalDateTime startOf(Granularity g, long bucket) {
+        switch (g) {
+            case HOUR:  return LocalDateTime.ofEpochSecond(bucket * 3600, 0, ZoneOffset.UTC);
+            case DAY:   return LocalDate.ofEpochDay(bucket).atStartOfDay();
+            default:    return LocalDate.of((int) Math.floorDiv(bucket, 12), Math.floorMod(bucket, 12) + 1, 1).atStartOfDay();
+        }
+    }
+
+    // A sale with a time of day lands in all three levels.
+    public void add(LocalDateTime at, int ordinal, int sellerId, int categoryCode,
+                    int quantity, double revenue, double profit) {
+        for (Granularity g : Granularity.values()) {
+            add(g, bucketOf(g, at), ordinal, sellerId, categoryCode, 1, quantity, revenue, profit);
+        }
+    }
+
+    // Sales restored from the Sales table carry only a date, so they skip the
+    // hour level.
+    public void add(LocalDate date, int ordinal, int sellerId, int categoryCode,
+                    int quantity, double revenue, double profit) {
+        LocalDateTime at = date.atStartOfDay();
+        add(Granularity.DAY, bucketOf(Granularity.DAY, at), ordinal, sellerId, categoryCode, 1, quantity, revenue, profit);
+        add(Granularity.MONTH, bucketOf(Granularity.MONTH, at), ordinal, sellerId, categoryCode, 1, quantity, revenue, profit);
+    }
+
+    public void add(Granularity g, long bucket, int ordinal, int sellerId, int categoryCode,
+                    long saleCount, long units, double revenue, double profit) {
+        levels.get(g.ordinal()).computeIfAbsent(bucket, b -> new Bucket())
+                .add(ordinal, sellerId, categoryCode, saleCount, units, revenue, profit);
+    }
+
+    // Folds another rollup in; used to combine per-thread partials.
+    public void addAll(SalesRollups other) {
+        other.forEachCell((g, bucket, cell) -> add(g, bucket, cell.ordinal, cell.sellerId, cell.categoryCode,
+                cell.totals.getSaleCount(), cell.totals.getUnits(),
+                cell.totals.getRevenue(), cell.totals.getProfit()));
+    }
+
+    public void clear() {
+        for (ConcurrentSkipListMap<Long, Bucket> level : levels) {
+            level.clear();
+        }
+    }
+
+    public void removeBefore(Granularity g, long bucket) {
+        levels.get(g.ordinal()).headMap(bucket).clear();
+    }
+
+    // All-time totals, from the month buckets.
+    public SalesTotals total() {
+        SalesTotals result = new SalesTotals();
+        for (Bucket b : levels.get(Granularity.MONTH.ordinal()).values()) {
+            synchronized (b) {
+                result.add(b.total);
+            }
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return levels.get(Granularity.MONTH.ordinal()).isEmpty();
+    }
+
+    // Bucket totals for [from, to), keyed by bucket start.
+    public SortedMap<LocalDateTime, SalesTotals> totalsByBucket(Granularity g, LocalDateTime from, LocalDateTime to) {
+        SortedMap<LocalDateTime, SalesTotals> result = new TreeMap<>();
+        long first = bucketOf(g, from);
+        long last = bucketOf(g, to.minusNanos(1));
+        if (last < first) return result;
+        for (Map.Entry<Long, Bucket> e : levels.get(g.ordinal()).subMap(first, true, last, true).entrySet()) {
+            SalesTotals t = new SalesTotals();
+            synchronized (e.getValue()) {
+                t.add(e.getValue().total);
+            }
+            result.put(startOf(g, e.getKey()), t);
+        }
+        return result;
+    }
+
+    // Totals for the whole days from..to inclusive.
+    public SalesTotals totals(LocalDate from, LocalDate to) {
+        SalesTotals result = new SalesTotals();
+        for (Bucket b : cover(from, to)) {
+            synchronized (b) {
+                result.add(b.total);
+            }
+        }
+        return result;
+    }
+
+    // Totals for the whole days from..to inclusive, grouped by one dimension.
+    public Map<Integer, SalesTotals> totalsBy(Dimension d, LocalDate from, LocalDate to) {
+        return group(cover(from, to), d);
+    }
+
+    private static Map<Integer, SalesTotals> group(Collection<Bucket> buckets, Dimension d) {
+        Map<Integer, SalesTotals> result = new HashMap<>();
+        for (Bucket b : buckets) {
+            synchronized (b) {
+                for (Cell cell : b.cells.values()) {
+                    result.computeIfAbsent(cell.key(d), k -> new SalesTotals()).add(cell.totals);
+                }
+            }
+        }
+        return result;
+    }
+
+    // All-time totals grouped by one dimension, read from the month buckets.
+    public Map<Integer, SalesTotals> totalsBy(Dimension d) {
+        return group(levels.get(Granularity.MONTH.ordinal()).values(), d);
+    }
+
+    public void forEachCell(CellVisitor visitor) {
+        for (Granularity g : Granularity.values()) {
+            for (Map.Entry<Long, Bucket> e : levels.get(g.ordinal()).entrySet()) {
+                List<Cell> cells;
+                synchronized (e.getValue()) {
+                    cells = new ArrayList<>(e.getValue().cells.values());
+                }
+                for (Cell cell : cells) {
+                    visitor.visit(g, e.getKey(), cell);
+                }
+            }
+        }
+    }
+
+    // Month buckets for every month wholly inside the range, day buckets for
+    // the partial months at either end.
+    private List<Bucket> cover(LocalDate from, LocalDate to) {
+        List<Bucket> result = new ArrayList<>();
+        if (to.isBefore(from)) return result;
+        ConcurrentSkipListMap<Long, Bucket> days = levels.get(Granularity.DAY.ordinal());
+        ConcurrentSkipListMap<Long, Bucket> months = levels.get(Granularity.MONTH.ordinal());
+
+        LocalDate firstWholeMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate endOfWholeMonths = to.plusDays(1).withDayOfMonth(1); // exclusive
+
+        if (!firstWholeMonth.isBefore(endOfWholeMonths)) {
+            result.addAll(days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values());
+            return result;
+        }
+        result.addAll(days.subMap(from.toEpochDay(), true, firstWholeMonth.toEpochDay(), false).values());
+        long firstMonth = bucketOf(Granularity.MONTH, firstWholeMonth.atStartOfDay());
+        long monthsSpanned = ChronoUnit.MONTHS.between(firstWholeMonth, endOfWholeMonths);
+        result.addAll(months.subMap(firstMonth, true, firstMonth + monthsSpanned, false).values());
+        if (!to.isBefore(endOfWholeMonths)) {
+            result.addAll(days.subMap(endOfWholeMonths.toEpochDay(), true, to.toEpochDay(), true).values());
+        }
+        return result;
+    }
+}
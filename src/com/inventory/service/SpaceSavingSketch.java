@@ -0,0 +1,115 @@
+package com.inventory.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Space-Saving heavy-hitter sketch over product ordinals. Tracks at most
+// 'capacity' products however many there are: an untracked product takes
+// over the counter with the smallest count and inherits that count as its
+// possible overestimate. Any product sold more than total/capacity units is
+// guaranteed to be tracked, and each estimate is within getError of the
+// true count. Counters sit in a min-heap, so each update is O(log capacity)
+// and allocates nothing once the sketch is full.
+public class SpaceSavingSketch {
+
+    public static final class Counter {
+        private int ordinal;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        private Counter copy() {
+            Counter c = new Counter();
+            c.ordinal = ordinal;
+            c.count = count;
+            c.error = error;
+            return c;
+        }
+
+        public int getOrdinal() { return ordinal; }
+        public long getCount() { return count; }
+        // The count may overstate the true total by at most this much.
+        public long getError() { return error; }
+    }
+
+    private final int capacity;
+    private final Counter[] heap;
+    private final IntObjectMap<Counter> byOrdinal;
+    private int size;
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+        this.byOrdinal = new IntObjectMap<>(capacity);
+    }
+
+    public synchronized void add(int ordinal, long quantity) {
+        if (quantity <= 0) return;
+        total += quantity;
+        Counter c = byOrdinal.get(ordinal);
+        boolean appended = false;
+        if (c == null) {
+            if (size < capacity) {
+                c = new Counter();
+                c.heapIndex = size;
+                heap[size++] = c;
+                appended = true;
+            } else {
+                c = heap[0];
+                byOrdinal.remove(c.ordinal);
+                c.error = c.count;
+            }
+            c.ordinal = ordinal;
+            byOrdinal.put(ordinal, c);
+        }
+        c.count += quantity;
+        if (appended) {
+            siftUp(c.heapIndex);
+        } else {
+            siftDown(c.heapIndex);
+        }
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    // The n largest counters, largest first.
+    public synchronized Counter[] top(int n) {
+        Counter[] all = new Counter[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = heap[i].copy();
+        }
+        Arrays.sort(all, Comparator.comparingLong(Counter::getCount).reversed());
+        return Arrays.copyOf(all, Math.min(n, size));
+    }
+
+    private void siftUp(int i) {
+        Counter c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent].count <= c.count) break;
+            heap[i] = heap[parent];
+            heap[i].heapIndex = i;
+            i = parent;
+        }
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        Counter c = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (heap[child].count >= c.count) break;
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+}
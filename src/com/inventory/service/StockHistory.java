@@ -0,0 +1,158 @@
+package com.inventory.service;
+
+import com.inventory.model.InventoryEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stock level of every product over time, built from ledger events.
+//
+// Each product keeps its stock changes as parallel time/delta arrays and,
+// every CHECKPOINT_INTERVAL changes, a checkpoint with the level reached at
+// that point. A point-in-time lookup binary-searches the checkpoints and adds
+// up at most CHECKPOINT_INTERVAL deltas after the one it lands on. Unit
+// prices are kept the same way, so a past valuation uses the price of the
+// time rather than today's.
+public class StockHistory {
+
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    private static class Series {
+        long[] times = new long[8];
+        int[] deltas = new int[8];
+        int size;
+        // checkpointLevels[k] is the level after the first k * CHECKPOINT_INTERVAL deltas.
+        int[] checkpointLevels = new int[4];
+        int level;
+        // Unit price from priceTimes[i] until the next change.
+        long[] priceTimes = new long[2];
+        double[] prices = new double[2];
+        int priceCount;
+
+        synchronized void add(long time, int delta) {
+            if (size > 0 && time < times[size - 1]) {
+                time = times[size - 1];
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                deltas = Arrays.copyOf(deltas, size * 2);
+            }
+            if (size % CHECKPOINT_INTERVAL == 0) {
+                int k = size / CHECKPOINT_INTERVAL;
+                if (k == checkpointLevels.length) {
+                    checkpointLevels = Arrays.copyOf(checkpointLevels, k * 2);
+                }
+                checkpointLevels[k] = level;
+            }
+            times[size] = time;
+            deltas[size] = delta;
+            size++;
+            level += delta;
+        }
+
+        synchronized void setPrice(long time, double price) {
+            if (priceCount > 0) {
+                if (time < priceTimes[priceCount - 1]) {
+                    time = priceTimes[priceCount - 1];
+                }
+                if (prices[priceCount - 1] == price) return;
+                if (time == priceTimes[priceCount - 1]) {
+                    prices[priceCount - 1] = price;
+                    return;
+                }
+            }
+            if (priceCount == priceTimes.length) {
+                priceTimes = Arrays.copyOf(priceTimes, priceCount * 2);
+                prices = Arrays.copyOf(prices, priceCount * 2);
+            }
+            priceTimes[priceCount] = time;
+            prices[priceCount] = price;
+            priceCount++;
+        }
+
+        // Price in effect at 'time'; the first known price before that.
+        synchronized double priceAt(long time) {
+            if (priceCount == 0) return 0;
+            int lo = 0;
+            int hi = priceCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (priceTimes[mid] <= time) lo = mid;
+                else hi = mid - 1;
+            }
+            return prices[lo];
+        }
+
+        synchronized int levelAt(long time) {
+            // Last checkpoint whose first delta is not after 'time'.
+            int lo = 0;
+            int hi = (size + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL - 1;
+            if (hi < 0 || times[0] > time) return 0;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (times[mid * CHECKPOINT_INTERVAL] <= time) lo = mid;
+                else hi = mid - 1;
+            }
+            int result = checkpointLevels[lo];
+            int end = Math.min(size, (lo + 1) * CHECKPOINT_INTERVAL);
+            for (int i = lo * CHECKPOINT_INTERVAL; i < end && times[i] <= time; i++) {
+                result += deltas[i];
+            }
+            return result;
+        }
+    }
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public void apply(InventoryEvent e) {
+        if (e.getProductId() == null) return;
+        if (e.getType() == InventoryEvent.Type.ITEM_ADDED) {
+            // Adding a product again resets its level rather than adding to it.
+            Series s = series.computeIfAbsent(e.getProductId(), k -> new Series());
+            synchronized (s) {
+                s.setPrice(e.getTimestamp(), e.getPrice());
+                s.add(e.getTimestamp(), e.getQuantity() - s.level);
+            }
+            return;
+        }
+        if (e.getType() == InventoryEvent.Type.PRICE_CHANGED) {
+            Series s = series.get(e.getProductId());
+            if (s != null) {
+                s.setPrice(e.getTimestamp(), e.getPrice());
+            }
+            return;
+        }
+        int delta = e.getStockDelta();
+        if (delta == 0) return;
+        Series s = series.get(e.getProductId());
+        if (s != null) {
+            s.add(e.getTimestamp(), delta);
+        }
+    }
+
+    // Units on hand just after 'epochMillis'; 0 before the product existed.
+    public int getStockAt(String productId, long epochMillis) {
+        Series s = series.get(productId);
+        return s != null ? s.levelAt(epochMillis) : 0;
+    }
+
+    public double getValueAt(long epochMillis) {
+        double total = 0;
+        for (Series s : series.values()) {
+            int qty = s.levelAt(epochMillis);
+            if (qty != 0) total += qty * s.priceAt(epochMillis);
+        }
+        return total;
+    }
+
+    public Map<String, Integer> getAllStockAt(long epochMillis) {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Map.Entry<String, Series> e : series.entrySet()) {
+            int qty = e.getValue().levelAt(epochMillis);
+            if (qty != 0) result.put(e.getKey(), qty);
+        }
+        return result;
+    }
+}
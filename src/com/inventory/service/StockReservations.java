@@ -0,0 +1,216 @@
+package com.inventory.service;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Timed holds on stock. The held units live in LocationStock's reserved
+// counters; this class only tracks who holds what and until when.
+//
+// Holds are slots in preallocated parallel arrays, chained into the buckets of
+// a hashed timer wheel through prev/next indexes, so placing, confirming and
+// expiring a hold allocates nothing. A handle is the slot index combined with
+// a generation number, so a stale handle can't touch a reused slot.
+public class StockReservations {
+
+    private static final int NONE = -1;
+
+    private final LocationStock stock;
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int[] wheel;
+    private long currentTick;
+
+    private String[] locationIds;
+    private int[] ordinals;
+    private int[] quantities;
+    private int[] generations;
+    private long[] deadlineTicks;
+    private int[] next;
+    private int[] prev;
+    private int freeHead = NONE;
+    private int active;
+
+    private ScheduledExecutorService ticker;
+
+    public StockReservations(LocationStock stock, long tickMillis, int wheelSize, int initialCapacity) {
+        this.stock = stock;
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.wheel = new int[wheelSize];
+        Arrays.fill(wheel, NONE);
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        allocate(initialCapacity);
+    }
+
+    public synchronized void start() {
+        if (ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservation-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(() -> advanceTo(System.currentTimeMillis()),
+                tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    // Returns a handle, or -1 if that much stock isn't available.
+    public long reserve(String locationId, int ordinal, int quantity, long ttlMillis) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        if (!stock.tryReserve(locationId, ordinal, quantity)) {
+            return -1;
+        }
+        synchronized (this) {
+            if (freeHead == NONE) {
+                allocate(quantities.length * 2);
+            }
+            int slot = freeHead;
+            freeHead = next[slot];
+            locationIds[slot] = locationId;
+            ordinals[slot] = ordinal;
+            quantities[slot] = quantity;
+            deadlineTicks[slot] = (System.currentTimeMillis() + ttlMillis + tickMillis - 1) / tickMillis;
+            link(slot);
+            active++;
+            return ((long) generations[slot] << 32) | slot;
+        }
+    }
+
+    // Gives the units back. Returns false if the hold already expired or was used.
+    public boolean cancel(long handle) {
+        String locationId;
+        int ordinal;
+        int qty;
+        synchronized (this) {
+            int slot = slotOf(handle);
+            if (slot == NONE) return false;
+            locationId = locationIds[slot];
+            ordinal = ordinals[slot];
+            qty = quantities[slot];
+            free(slot);
+        }
+        stock.release(locationId, ordinal, qty);
+        return true;
+    }
+
+    // Ends the hold without releasing the units; the caller then consumes them
+    // with LocationStock.consumeReserved. Returns the slot, or -1 if gone.
+    synchronized int claim(long handle) {
+        int slot = slotOf(handle);
+        if (slot == NONE) return NONE;
+        unlink(slot);
+        generations[slot]++;
+        return slot;
+    }
+
+    synchronized String claimedLocation(int slot) { return locationIds[slot]; }
+    synchronized int claimedOrdinal(int slot) { return ordinals[slot]; }
+    synchronized int claimedQuantity(int slot) { return quantities[slot]; }
+
+    synchronized void finishClaim(int slot) {
+        locationIds[slot] = null;
+        quantities[slot] = 0;
+        next[slot] = freeHead;
+        freeHead = slot;
+        active--;
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    // Expires every hold whose deadline has passed.
+    void advanceTo(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        while (true) {
+            String locationId;
+            int ordinal;
+            int qty;
+            synchronized (this) {
+                int slot = dueSlot(target);
+                if (slot == NONE) return;
+                locationId = locationIds[slot];
+                ordinal = ordinals[slot];
+                qty = quantities[slot];
+                free(slot);
+            }
+            stock.release(locationId, ordinal, qty);
+        }
+    }
+
+    private int dueSlot(long target) {
+        while (currentTick <= target) {
+            int bucket = (int) Math.floorMod(currentTick, (long) wheelSize);
+            for (int slot = wheel[bucket]; slot != NONE; slot = next[slot]) {
+                if (deadlineTicks[slot] <= currentTick) return slot;
+            }
+            if (currentTick == target) return NONE;
+            currentTick++;
+        }
+        return NONE;
+    }
+
+    private int slotOf(long handle) {
+        int slot = (int) handle;
+        if (handle < 0 || slot >= quantities.length) return NONE;
+        // A free slot has no quantity; a live hold always has a positive one.
+        if (generations[slot] != (int) (handle >>> 32) || quantities[slot] == 0) return NONE;
+        return slot;
+    }
+
+    private void link(int slot) {
+        int bucket = (int) Math.floorMod(deadlineTicks[slot], (long) wheelSize);
+        prev[slot] = NONE;
+        next[slot] = wheel[bucket];
+        if (wheel[bucket] != NONE) prev[wheel[bucket]] = slot;
+        wheel[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        int bucket = (int) Math.floorMod(deadlineTicks[slot], (long) wheelSize);
+        if (prev[slot] != NONE) next[prev[slot]] = next[slot];
+        else wheel[bucket] = next[slot];
+        if (next[slot] != NONE) prev[next[slot]] = prev[slot];
+    }
+
+    private void free(int slot) {
+        unlink(slot);
+        generations[slot]++;
+        finishClaim(slot);
+    }
+
+    private void allocate(int capacity) {
+        int old = quantities == null ? 0 : quantities.length;
+        if (old == 0) {
+            locationIds = new String[capacity];
+            ordinals = new int[capacity];
+            quantities = new int[capacity];
+            generations = new int[capacity];
+            deadlineTicks = new long[capacity];
+            next = new int[capacity];
+            prev = new int[capacity];
+        } else {
+            locationIds = Arrays.copyOf(locationIds, capacity);
+            ordinals = Arrays.copyOf(ordinals, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            deadlineTicks = Arrays.copyOf(deadlineTicks, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+        for (int i = capacity - 1; i >= old; i--) {
+            next[i] = freeHead;
+            freeHead = i;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.inventory.ui;
 
+import com.inventory.db.DataExporter;
 import com.inventory.model.*;
 import com.inventory.service.AuthService;
 import com.inventory.service.InventoryService;
@@ -7,11 +8,25 @@ import com.inventory.service.InventoryService;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class InventoryAppFrame extends JFrame {
 
@@ -28,6 +43,11 @@ public class InventoryAppFrame extends JFrame {
     private JTextField txtProdPrice;
     private JTextField txtProdStock;
     private JTextField txtProdReorder;
+    private JTextField txtProdExpiry;
+    private JTextField txtItemFilter;
+    private TableRowSorter<DefaultTableModel> productSorter;
+    private Timer filterTimer;
+    private SwingWorker<Set<String>, Void> filterWorker;
 
     // Supplier tab
     private DefaultTableModel supplierTableModel;
@@ -38,6 +58,11 @@ public class InventoryAppFrame extends JFrame {
 
     // Reports tab
     private JTextArea txtReportArea;
+    private JLabel lblReportPage;
+    private JButton btnPrevPage;
+    private JButton btnNextPage;
+    private Report shownReport;
+    private int shownPage;
 
     // Purchase Orders tab
     private DefaultTableModel poTableModel;
@@ -45,6 +70,7 @@ public class InventoryAppFrame extends JFrame {
     private DefaultTableModel poItemsTableModel;
     private JTable poItemsTable;
     private JLabel lblPoSummary;
+    private List<OrderItem> selectedPoItems = new ArrayList<>();
 
     // Admin tab
     private DefaultTableModel resetTableModel;
@@ -142,7 +168,7 @@ public class InventoryAppFrame extends JFrame {
     private JPanel createItemsPanel() {
         JPanel panel = new JPanel(new BorderLayout(8, 8));
 
-        JPanel form = new JPanel(new GridLayout(2, 6, 5, 5));
+        JPanel form = new JPanel(new GridLayout(2, 7, 5, 5));
         form.setBorder(new TitledBorder("Product Details"));
 
         txtProdId = new JTextField();
@@ -151,6 +177,7 @@ public class InventoryAppFrame extends JFrame {
         txtProdPrice = new JTextField();
         txtProdStock = new JTextField();
         txtProdReorder = new JTextField();
+        txtProdExpiry = new JTextField();
 
         form.add(new JLabel("ID:"));
         form.add(new JLabel("Name:"));
@@ -158,6 +185,7 @@ public class InventoryAppFrame extends JFrame {
         form.add(new JLabel("Price:"));
         form.add(new JLabel("Stock:"));
         form.add(new JLabel("Reorder Level:"));
+        form.add(new JLabel("Expiry (yyyy-mm-dd):"));
 
         form.add(txtProdId);
         form.add(txtProdName);
@@ -165,30 +193,52 @@ public class InventoryAppFrame extends JFrame {
         form.add(txtProdPrice);
         form.add(txtProdStock);
         form.add(txtProdReorder);
+        form.add(txtProdExpiry);
 
         panel.add(form, BorderLayout.NORTH);
 
         productTableModel = new DefaultTableModel(
-                new Object[]{"ID", "Name", "Category", "Price", "Stock", "Reorder"}, 0) {
+                new Object[]{"ID", "Name", "Category", "Price", "Stock", "Reorder", "Expiry"}, 0) {
             @Override public boolean isCellEditable(int row, int column) { return false; }
         };
         productTable = new JTable(productTableModel);
         styleTable(productTable);
+        productSorter = new TableRowSorter<>(productTableModel);
+        productTable.setRowSorter(productSorter);
         JScrollPane scrollPane = new JScrollPane(productTable);
-        scrollPane.setBorder(new TitledBorder("Inventory"));
-        panel.add(scrollPane, BorderLayout.CENTER);
+
+        txtItemFilter = new JTextField();
+        filterTimer = new Timer(250, e -> runItemFilter());
+        filterTimer.setRepeats(false);
+        txtItemFilter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { filterTimer.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { filterTimer.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { filterTimer.restart(); }
+        });
+
+        JPanel filterRow = new JPanel(new BorderLayout(5, 5));
+        filterRow.add(new JLabel("Filter:"), BorderLayout.WEST);
+        filterRow.add(txtItemFilter, BorderLayout.CENTER);
+
+        JPanel tablePanel = new JPanel(new BorderLayout(5, 5));
+        tablePanel.setBorder(new TitledBorder("Inventory"));
+        tablePanel.add(filterRow, BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(tablePanel, BorderLayout.CENTER);
 
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton btnAdd = new JButton("Add / Update Item");
         JButton btnIncreaseStock = new JButton("Increase Stock");
         JButton btnDecreaseStock = new JButton("Decrease Stock");
         JButton btnRecordSale = new JButton("Record Sale");
+        JButton btnTransfer = new JButton("Transfer...");
         JButton btnRefresh = new JButton("Refresh");
 
         buttons.add(btnAdd);
         buttons.add(btnIncreaseStock);
         buttons.add(btnDecreaseStock);
         buttons.add(btnRecordSale);
+        buttons.add(btnTransfer);
         buttons.add(btnRefresh);
 
         panel.add(buttons, BorderLayout.SOUTH);
@@ -198,6 +248,7 @@ public class InventoryAppFrame extends JFrame {
         btnDecreaseStock.addActionListener(e -> onChangeStock(false));
         btnRefresh.addActionListener(e -> refreshProductTable());
         btnRecordSale.addActionListener(e -> onRecordSale());
+        btnTransfer.addActionListener(e -> onTransferStock());
 
         return panel;
     }
@@ -210,17 +261,21 @@ public class InventoryAppFrame extends JFrame {
             double price = Double.parseDouble(txtProdPrice.getText().trim());
             int stock = Integer.parseInt(txtProdStock.getText().trim());
             int reorder = Integer.parseInt(txtProdReorder.getText().trim());
+            String expiryStr = txtProdExpiry.getText().trim();
+            LocalDate expiry = expiryStr.isEmpty() ? null : LocalDate.parse(expiryStr);
 
             if (id.isEmpty() || name.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "ID and Name are required");
                 return;
             }
 
-            service.addItem(id, name, category, price, stock, null, reorder);
+            service.addItem(id, name, category, price, stock, expiry, reorder);
             refreshProductTable();
             JOptionPane.showMessageDialog(this, "Item added/updated successfully");
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid numeric input: " + ex.getMessage());
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid expiry date, use yyyy-mm-dd");
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
         }
@@ -232,7 +287,7 @@ public class InventoryAppFrame extends JFrame {
             JOptionPane.showMessageDialog(this, "Select a product first");
             return;
         }
-        String productId = (String) productTableModel.getValueAt(row, 0);
+        String productId = (String) productTableModel.getValueAt(productTable.convertRowIndexToModel(row), 0);
         String qty = JOptionPane.showInputDialog(this, "Enter quantity:");
         if (qty == null) return;
         try {
@@ -253,7 +308,7 @@ public class InventoryAppFrame extends JFrame {
             JOptionPane.showMessageDialog(this, "Select a product first");
             return;
         }
-        String productId = (String) productTableModel.getValueAt(row, 0);
+        String productId = (String) productTableModel.getValueAt(productTable.convertRowIndexToModel(row), 0);
 
         String qtyStr = JOptionPane.showInputDialog(this, "Enter quantity sold:");
         if (qtyStr == null) return;
@@ -274,6 +329,36 @@ public class InventoryAppFrame extends JFrame {
         }
     }
 
+    private void onTransferStock() {
+        int row = productTable.getSelectedRow();
+        if (row < 0) {
+            JOptionPane.showMessageDialog(this, "Select a product first");
+            return;
+        }
+        String productId = (String) productTableModel.getValueAt(productTable.convertRowIndexToModel(row), 0);
+
+        Object[] locations = service.getLocations().stream().map(Location::getId).toArray();
+        Object from = JOptionPane.showInputDialog(this,
+                "Stock by location: " + service.getStockByLocation(productId) + "\nFrom:",
+                "Transfer Stock", JOptionPane.PLAIN_MESSAGE, null, locations, locations[0]);
+        if (from == null) return;
+        Object to = JOptionPane.showInputDialog(this, "To:", "Transfer Stock",
+                JOptionPane.PLAIN_MESSAGE, null, locations, locations[locations.length - 1]);
+        if (to == null) return;
+        String qtyStr = JOptionPane.showInputDialog(this, "Quantity to transfer:");
+        if (qtyStr == null) return;
+
+        try {
+            service.transferStock(productId, (String) from, (String) to, Integer.parseInt(qtyStr.trim()));
+            JOptionPane.showMessageDialog(this, "Transferred. Stock by location: "
+                    + service.getStockByLocation(productId));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid quantity");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+        }
+    }
+
     private void refreshProductTable() {
         List<Product> products = service.getAllProducts();
         productTableModel.setRowCount(0);
@@ -284,9 +369,63 @@ public class InventoryAppFrame extends JFrame {
                     p.getCategory(),
                     p.getUnitPrice(),
                     p.getStockLevel(),
-                    p.getReorderLevel()
+                    p.getReorderLevel(),
+                    p.getExpiryDate() != null ? p.getExpiryDate() : ""
             });
         }
+        if (!txtItemFilter.getText().trim().isEmpty()) {
+            runItemFilter();
+        }
+    }
+
+    // Runs on the EDT once typing pauses; the index lookup itself happens on a
+    // worker thread and any query still in flight is cancelled.
+    private void runItemFilter() {
+        if (filterWorker != null) {
+            filterWorker.cancel(true);
+        }
+
+        String keyword = txtItemFilter.getText().trim();
+        if (keyword.isEmpty()) {
+            filterWorker = null;
+            productSorter.setRowFilter(null);
+            return;
+        }
+
+        SwingWorker<Set<String>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Set<String> doInBackground() {
+                Set<String> ids = new HashSet<>();
+                for (Product p : service.searchItems(keyword)) {
+                    ids.add(p.getId());
+                }
+                return ids;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || filterWorker != this) return;
+                try {
+                    Set<String> ids = get();
+                    productSorter.setRowFilter(new RowFilter<DefaultTableModel, Integer>() {
+                        @Override
+                        public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
+                            return ids.contains((String) entry.getValue(0));
+                        }
+                    });
+                } catch (CancellationException ignored) {
+                    // superseded by a newer query
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(InventoryAppFrame.this, "Search failed: " + cause.getMessage());
+                }
+            }
+        };
+        filterWorker = worker;
+        worker.execute();
     }
 
     // ---------- Suppliers Tab ----------
@@ -377,7 +516,7 @@ public class InventoryAppFrame extends JFrame {
         poScroll.setBorder(new TitledBorder("Purchase Orders"));
 
         poItemsTableModel = new DefaultTableModel(
-                new Object[]{"Product", "Qty", "Unit Price", "Line Total"}, 0) {
+                new Object[]{"Product", "Qty", "Received", "Unit Price", "Line Total"}, 0) {
             @Override public boolean isCellEditable(int row, int column) { return false; }
         };
         poItemsTable = new JTable(poItemsTableModel);
@@ -398,6 +537,19 @@ public class InventoryAppFrame extends JFrame {
 
         panel.add(split, BorderLayout.CENTER);
 
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton btnReceive = new JButton("Receive Selected");
+        JButton btnReceiveLine = new JButton("Receive Line...");
+        JButton btnRefresh = new JButton("Refresh");
+        buttons.add(btnRefresh);
+        buttons.add(btnReceiveLine);
+        buttons.add(btnReceive);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        btnReceive.addActionListener(e -> onReceivePurchaseOrders());
+        btnReceiveLine.addActionListener(e -> onReceiveOrderLine());
+        btnRefresh.addActionListener(e -> refreshPurchaseOrdersTable());
+
         ListSelectionListener listener = e -> {
             if (!e.getValueIsAdjusting()) {
                 onPurchaseOrderSelected();
@@ -423,6 +575,7 @@ public class InventoryAppFrame extends JFrame {
         }
         if (poItemsTableModel != null) {
             poItemsTableModel.setRowCount(0);
+            selectedPoItems = new ArrayList<>();
         }
         if (lblPoSummary != null) {
             lblPoSummary.setText("Select a purchase order to view details.");
@@ -433,25 +586,22 @@ public class InventoryAppFrame extends JFrame {
         int row = poTable.getSelectedRow();
         if (row < 0) {
             poItemsTableModel.setRowCount(0);
+            selectedPoItems = new ArrayList<>();
             lblPoSummary.setText("Select a purchase order to view details.");
             return;
         }
 
         int poId = (int) poTableModel.getValueAt(row, 0);
-        PurchaseOrder selected = null;
-        for (PurchaseOrder po : service.getAllPurchaseOrders()) {
-            if (po.getId() == poId) {
-                selected = po;
-                break;
-            }
-        }
+        PurchaseOrder selected = service.getPurchaseOrderById(poId);
         if (selected == null) return;
 
         poItemsTableModel.setRowCount(0);
-        for (OrderItem item : selected.getItems()) {
+        selectedPoItems = new ArrayList<>(service.getOrderItems(poId));
+        for (OrderItem item : selectedPoItems) {
             poItemsTableModel.addRow(new Object[]{
                     item.getProduct().getName(),
                     item.getQuantity(),
+                    item.getReceivedQuantity(),
                     item.getUnitPrice(),
                     String.format("%.2f", item.getLineTotal())
             });
@@ -467,6 +617,53 @@ public class InventoryAppFrame extends JFrame {
         ));
     }
 
+    private void onReceivePurchaseOrders() {
+        int[] rows = poTable.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select one or more purchase orders first.");
+            return;
+        }
+        List<Integer> poIds = new ArrayList<>();
+        for (int row : rows) {
+            poIds.add((int) poTableModel.getValueAt(row, 0));
+        }
+        try {
+            GoodsReceipt receipt = service.receivePurchaseOrders(poIds);
+            refreshPurchaseOrdersTable();
+            refreshProductTable();
+            JOptionPane.showMessageDialog(this, "Received " + receipt.getLineQuantities().size()
+                    + " line(s) across " + poIds.size() + " order(s).");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+        }
+    }
+
+    private void onReceiveOrderLine() {
+        int poRow = poTable.getSelectedRow();
+        int lineRow = poItemsTable.getSelectedRow();
+        if (poRow < 0 || lineRow < 0 || lineRow >= selectedPoItems.size()) {
+            JOptionPane.showMessageDialog(this, "Select an order line first.");
+            return;
+        }
+        int poId = (int) poTableModel.getValueAt(poRow, 0);
+        OrderItem item = selectedPoItems.get(lineRow);
+
+        String qtyStr = JOptionPane.showInputDialog(this, "Quantity received (outstanding: "
+                + item.getOutstandingQuantity() + "):");
+        if (qtyStr == null) return;
+        try {
+            int qty = Integer.parseInt(qtyStr.trim());
+            service.receivePurchaseOrder(poId, Collections.singletonMap(item.getProduct().getId(), qty));
+            refreshPurchaseOrdersTable();
+            refreshProductTable();
+            JOptionPane.showMessageDialog(this, "Receipt recorded.");
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid quantity");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+        }
+    }
+
     // ---------- Stock Requests Tab ----------
 
     private JPanel createStockRequestsPanel() {
@@ -621,26 +818,180 @@ public class InventoryAppFrame extends JFrame {
         JButton btnStockReport = new JButton("Stock Report");
         JButton btnLowStockReport = new JButton("Low Stock Report");
 
+        JButton btnForecastReport = new JButton("Demand Forecast");
+        JButton btnExpiringReport = new JButton("Expiring (30 days)");
+        JButton btnStockAsOfReport = new JButton("Stock As Of...");
+        JButton btnCategoryReport = new JButton("Categories");
+        JButton btnBestSellersReport = new JButton("Best Sellers");
+        JButton btnSalesSummaryReport = new JButton("Sales Summary...");
+        JButton btnExport = new JButton("Export Data...");
+
         buttons.add(btnStockReport);
         buttons.add(btnLowStockReport);
+        buttons.add(btnForecastReport);
+        buttons.add(btnExpiringReport);
+        buttons.add(btnStockAsOfReport);
+        buttons.add(btnCategoryReport);
+        buttons.add(btnBestSellersReport);
+        buttons.add(btnSalesSummaryReport);
+        buttons.add(btnExport);
 
         btnStockReport.addActionListener(e -> onGenerateStockReport());
         btnLowStockReport.addActionListener(e -> onGenerateLowStockReport());
+        btnForecastReport.addActionListener(e -> onGenerateForecastReport());
+        btnExpiringReport.addActionListener(e -> onGenerateExpiringReport());
+        btnStockAsOfReport.addActionListener(e -> onGenerateStockAsOfReport());
+        btnCategoryReport.addActionListener(e -> onGenerateCategoryReport());
+        btnBestSellersReport.addActionListener(e -> onGenerateBestSellersReport());
+        btnSalesSummaryReport.addActionListener(e -> onGenerateSalesSummaryReport());
+        btnExport.addActionListener(e -> onExportData());
+
+        // Reports live in files; only the page on screen is read in.
+        JPanel paging = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        btnPrevPage = new JButton("< Prev");
+        btnNextPage = new JButton("Next >");
+        lblReportPage = new JLabel(" ");
+        paging.add(btnPrevPage);
+        paging.add(lblReportPage);
+        paging.add(btnNextPage);
+        btnPrevPage.addActionListener(e -> showReportPage(shownPage - 1));
+        btnNextPage.addActionListener(e -> showReportPage(shownPage + 1));
+        btnPrevPage.setEnabled(false);
+        btnNextPage.setEnabled(false);
 
         panel.add(buttons, BorderLayout.NORTH);
         panel.add(scroll, BorderLayout.CENTER);
+        panel.add(paging, BorderLayout.SOUTH);
 
         return panel;
     }
 
+    private void showReport(Report r) {
+        shownReport = r;
+        showReportPage(0);
+    }
+
+    private void showReportPage(int page) {
+        if (shownReport == null || page < 0 || page >= shownReport.getPageCount()) return;
+        try {
+            txtReportArea.setText(shownReport.readPage(page));
+            txtReportArea.setCaretPosition(0);
+        } catch (UncheckedIOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not read report: " + ex.getCause().getMessage());
+            return;
+        }
+        shownPage = page;
+        lblReportPage.setText("Page " + (page + 1) + " of " + shownReport.getPageCount());
+        btnPrevPage.setEnabled(page > 0);
+        btnNextPage.setEnabled(page + 1 < shownReport.getPageCount());
+    }
+
     private void onGenerateStockReport() {
         Report r = service.generateStockReport();
-        txtReportArea.setText(r.getContent());
+        showReport(r);
     }
 
     private void onGenerateLowStockReport() {
         Report r = service.generateLowStockReport();
-        txtReportArea.setText(r.getContent());
+        showReport(r);
+    }
+
+    private void onGenerateForecastReport() {
+        Report r = service.generateDemandForecastReport(14);
+        showReport(r);
+    }
+
+    private void onGenerateExpiringReport() {
+        Report r = service.generateExpiringReport(30);
+        showReport(r);
+    }
+
+    private void onGenerateCategoryReport() {
+        Report r = service.generateCategoryReport();
+        showReport(r);
+    }
+
+    private void onGenerateBestSellersReport() {
+        Report r = service.generateBestSellersReport(10);
+        showReport(r);
+    }
+
+    private void onGenerateSalesSummaryReport() {
+        String fromStr = JOptionPane.showInputDialog(this, "From (YYYY-MM-DD):",
+                LocalDate.now().withDayOfMonth(1).toString());
+        if (fromStr == null) return;
+        String toStr = JOptionPane.showInputDialog(this, "To (YYYY-MM-DD):", LocalDate.now().toString());
+        if (toStr == null) return;
+        try {
+            Report r = service.generateSalesSummaryReport(LocalDate.parse(fromStr.trim()), LocalDate.parse(toStr.trim()));
+            showReport(r);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid date.");
+        }
+    }
+
+    // The file name picks the format: .ndjson or .json for NDJSON, anything
+    // else CSV, with a trailing .gz for gzip.
+    private void onExportData() {
+        JComboBox<DataExporter.Dataset> cmbDataset = new JComboBox<>(DataExporter.Dataset.values());
+        JCheckBox chkSinceLast = new JCheckBox("Only rows added since the last export");
+        chkSinceLast.setEnabled(((DataExporter.Dataset) cmbDataset.getSelectedItem()).isIncremental());
+        cmbDataset.addActionListener(e -> {
+            boolean incremental = ((DataExporter.Dataset) cmbDataset.getSelectedItem()).isIncremental();
+            chkSinceLast.setEnabled(incremental);
+            if (!incremental) chkSinceLast.setSelected(false);
+        });
+        JPanel options = new JPanel(new GridLayout(2, 1, 5, 5));
+        options.add(cmbDataset);
+        options.add(chkSinceLast);
+        if (JOptionPane.showConfirmDialog(this, options, "Export Data",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File(
+                cmbDataset.getSelectedItem().toString().toLowerCase() + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        DataExporter.Dataset dataset = (DataExporter.Dataset) cmbDataset.getSelectedItem();
+        boolean sinceLast = chkSinceLast.isSelected();
+        Path target = chooser.getSelectedFile().toPath();
+        String name = target.getFileName().toString().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        String base = gzip ? name.substring(0, name.length() - 3) : name;
+        DataExporter.Format format = base.endsWith(".ndjson") || base.endsWith(".json")
+                ? DataExporter.Format.NDJSON : DataExporter.Format.CSV;
+
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                DataExporter exporter = new DataExporter(service, Paths.get("ExportState"));
+                return sinceLast
+                        ? exporter.exportSinceLast(dataset, format, gzip, target)
+                        : exporter.export(dataset, format, gzip, target, null, null);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(InventoryAppFrame.this,
+                            "Exported " + get() + " rows to " + target);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(InventoryAppFrame.this, "Export failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void onGenerateStockAsOfReport() {
+        String dateStr = JOptionPane.showInputDialog(this, "Date (YYYY-MM-DD):", LocalDate.now().toString());
+        if (dateStr == null) return;
+        try {
+            Report r = service.generateStockAsOfReport(LocalDate.parse(dateStr.trim()));
+            showReport(r);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid date.");
+        }
     }
 
     // ---------- Admin Tab ----------